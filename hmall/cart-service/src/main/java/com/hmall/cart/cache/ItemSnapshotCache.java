@@ -0,0 +1,72 @@
+package com.hmall.cart.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.cart.config.CartProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 购物车中商品的本地快照：价格、状态和库存。
+ * 查询购物车时先查快照，商品变更消息会实时更新已有的快照，快照超过最大过期时间后才重新查询商品服务
+ */
+@Component
+public class ItemSnapshotCache {
+
+    private final Cache<Long, Snapshot> cache;
+    private final long maxStalenessMillis;
+
+    public ItemSnapshotCache(CartProperties cartProperties) {
+        CartProperties.Enrich enrich = cartProperties.getEnrich();
+        this.maxStalenessMillis = enrich.getMaxStaleness().toMillis();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(enrich.getCacheSize())
+                .expireAfterWrite(enrich.getCacheTtl())
+                .build();
+    }
+
+    /**
+     * 查询未超过最大过期时间的快照
+     */
+    public Map<Long, ItemPriceStockDTO> getFresh(Collection<Long> itemIds) {
+        long now = System.currentTimeMillis();
+        Map<Long, ItemPriceStockDTO> result = new HashMap<>(itemIds.size());
+        cache.getAllPresent(itemIds).forEach((id, snapshot) -> {
+            if (now - snapshot.updateTime <= maxStalenessMillis) {
+                result.put(id, snapshot.item);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 查询所有快照，包括已经超过最大过期时间的
+     */
+    public Map<Long, ItemPriceStockDTO> getAny(Collection<Long> itemIds) {
+        Map<Long, ItemPriceStockDTO> result = new HashMap<>(itemIds.size());
+        cache.getAllPresent(itemIds).forEach((id, snapshot) -> result.put(id, snapshot.item));
+        return result;
+    }
+
+    public void putAll(Collection<ItemPriceStockDTO> items) {
+        long now = System.currentTimeMillis();
+        items.forEach(item -> cache.put(item.getId(), new Snapshot(item, now)));
+    }
+
+    /**
+     * 根据商品变更消息更新快照，只更新已有的快照，不缓存不在购物车中的商品
+     */
+    public void applyChanges(Collection<ItemPriceStockDTO> items) {
+        long now = System.currentTimeMillis();
+        for (ItemPriceStockDTO item : items) {
+            cache.asMap().computeIfPresent(item.getId(), (id, old) -> new Snapshot(item, now));
+        }
+    }
+
+    private record Snapshot(ItemPriceStockDTO item, long updateTime) {
+    }
+}
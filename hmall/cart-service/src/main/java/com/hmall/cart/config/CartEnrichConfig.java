@@ -0,0 +1,34 @@
+package com.hmall.cart.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+@Configuration
+public class CartEnrichConfig {
+    /**
+     * 查询商品信息的执行器，每个查询一个虚拟线程，等待商品服务时不占用平台线程，也不会占用 Tomcat 线程。
+     * 同时进行的查询数量达到上限时直接拒绝，调用方改用最近一次查到的商品信息，商品服务变慢时不会无限堆积请求
+     */
+    @Bean
+    public Executor cartEnrichExecutor(CartProperties cartProperties) {
+        ThreadFactory threadFactory = Thread.ofVirtual().name("cart-enrich-", 0).factory();
+        Semaphore permits = new Semaphore(cartProperties.getEnrich().getMaxConcurrency());
+        return task -> {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("查询商品信息的并发数已达上限");
+            }
+            threadFactory.newThread(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            }).start();
+        };
+    }
+}
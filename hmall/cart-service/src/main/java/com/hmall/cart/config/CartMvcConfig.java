@@ -0,0 +1,27 @@
+package com.hmall.cart.config;
+
+import com.hmall.cart.limit.UserRateLimitInterceptor;
+import com.hmall.cart.limit.UserRateLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "hm.cart.protection", name = "rate-limit-enabled", havingValue = "true", matchIfMissing = true)
+public class CartMvcConfig implements WebMvcConfigurer {
+
+    private final UserRateLimiter userRateLimiter;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 排在 UserInfoInterceptor、GuestTokenInterceptor 之后，此时已经可以拿到用户id 或游客id。
+        // 下单后清理购物车由交易服务携带买家的用户信息调用，不是用户发起的请求，不占用用户的令牌
+        registry.addInterceptor(new UserRateLimitInterceptor(userRateLimiter))
+                .addPathPatterns("/carts/**")
+                .excludePathPatterns("/carts/orders/**")
+                .order(2);
+    }
+}
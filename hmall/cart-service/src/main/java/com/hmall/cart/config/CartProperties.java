@@ -1,12 +1,144 @@
 package com.hmall.cart.config;
 
+import com.hmall.cart.enums.CartStoreType;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "hm.cart")
 public class CartProperties {
     private Integer maxAmount;
+    /**
+     * 购物车的存储方式，默认直接读写 MySQL
+     */
+    private CartStoreType store = CartStoreType.DB;
+    /**
+     * Redis、本地存储方式下，购物车变更回写 MySQL 的间隔
+     */
+    private Duration writeBehindInterval = Duration.ofSeconds(1);
+    /**
+     * Redis 存储方式下，购物车 hash 的有效期，每次修改后重新计时，过期后从 MySQL 重新加载
+     */
+    private Duration redisTtl = Duration.ofDays(7);
+    /**
+     * 查询购物车时补充商品最新信息的配置
+     */
+    private Enrich enrich = new Enrich();
+    /**
+     * 游客身份的配置
+     */
+    private Guest guest = new Guest();
+    /**
+     * 过期购物车条目清理的配置
+     */
+    private Eviction eviction = new Eviction();
+    /**
+     * 调用其它服务时的负载均衡配置
+     */
+    private LoadBalancer loadBalancer = new LoadBalancer();
+    /**
+     * 单个用户请求过多时的保护配置
+     */
+    private Protection protection = new Protection();
+
+    @Data
+    public static class Enrich {
+        /**
+         * 等待商品服务的最长时间，超时后使用最近一次查到的商品信息
+         */
+        private Duration timeout = Duration.ofMillis(300);
+        /**
+         * 同时进行的商品信息查询数量上限，超过后直接使用最近一次查到的商品信息
+         */
+        private Integer maxConcurrency = 200;
+        /**
+         * 本地商品快照的缓存数量
+         */
+        private Long cacheSize = 10000L;
+        /**
+         * 本地商品快照的保留时间，超过 maxStaleness 的快照在商品服务超时时仍可使用
+         */
+        private Duration cacheTtl = Duration.ofMinutes(10);
+        /**
+         * 本地商品快照的最大过期时间，在这个时间内直接使用快照，不查询商品服务。
+         * 快照会被商品变更消息实时更新，这个时间用于兜底消息丢失的情况
+         */
+        private Duration maxStaleness = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Guest {
+        /**
+         * 游客令牌的签名密钥，通过环境变量或 Nacos 配置，未配置时服务无法启动
+         */
+        private String secret;
+        /**
+         * 游客令牌的有效期，过期后无法再合并这个游客的购物车
+         */
+        private Duration tokenTtl = Duration.ofDays(7);
+    }
+
+    @Data
+    public static class Eviction {
+        /**
+         * 是否定时清理长期未修改的购物车条目
+         */
+        private Boolean enabled = true;
+        /**
+         * 超过这个时间未修改的购物车条目会被删除
+         */
+        private Duration ttl = Duration.ofDays(30);
+        /**
+         * 每批删除的条目数量，批次越小，每次持有行锁的时间越短
+         */
+        private Integer batchSize = 500;
+        /**
+         * 每批删除后的停顿时间，给正常业务让出数据库资源
+         */
+        private Duration pause = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class LoadBalancer {
+        /**
+         * 响应时间滑动平均的权重，越大越看重最近一次的响应时间
+         */
+        private Double decay = 0.3;
+        /**
+         * 还没有响应时间数据的实例，按这个响应时间估算
+         */
+        private Duration initialLatency = Duration.ofMillis(50);
+        /**
+         * 连续失败（超时、5xx）达到这个次数的实例会被暂时摘除
+         */
+        private Integer failureThreshold = 3;
+        /**
+         * 实例被摘除的时间，到期后重新参与选择
+         */
+        private Duration ejectTime = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Protection {
+        /**
+         * 是否按用户限流
+         */
+        private Boolean rateLimitEnabled = true;
+        /**
+         * 每个用户每秒允许的请求数
+         */
+        private Integer permitsPerSecond = 10;
+        /**
+         * 每个用户允许的突发请求数，正常用户的连续点击不会被限流
+         */
+        private Integer burst = 20;
+        /**
+         * 限流状态的保留数量，超过后淘汰最久未访问的用户
+         */
+        private Long maxUsers = 100000L;
+    }
 }
@@ -0,0 +1,23 @@
+package com.hmall.cart.config;
+
+import com.hmall.cart.interceptor.GuestTokenInterceptor;
+import com.hmall.cart.utils.GuestTokenSigner;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class GuestMvcConfig implements WebMvcConfigurer {
+
+    private final GuestTokenSigner guestTokenSigner;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 游客只能增删改查自己的购物车，合并购物车、结算和下单后的清理必须是登录用户
+        registry.addInterceptor(new GuestTokenInterceptor(guestTokenSigner))
+                .addPathPatterns("/carts", "/carts/batch", "/carts/{id:\\d+}")
+                .order(1);
+    }
+}
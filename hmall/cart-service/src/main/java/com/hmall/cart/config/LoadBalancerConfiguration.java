@@ -1,9 +1,6 @@
 package com.hmall.cart.config;
 
-import com.alibaba.cloud.nacos.NacosDiscoveryProperties;
-import com.alibaba.cloud.nacos.loadbalancer.NacosLoadBalancer;
-import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import com.hmall.cart.loadbalancer.LatencyAwareLoadBalancer;
 import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
 import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
 import org.springframework.context.annotation.Bean;
@@ -11,16 +8,17 @@ import org.springframework.core.env.Environment;
 
 public class LoadBalancerConfiguration {
     @Bean
-    public ReactorLoadBalancer<ServiceInstance> reactorServiceInstanceLoadBalancer(
+    public LatencyAwareLoadBalancer reactorServiceInstanceLoadBalancer(
             Environment environment,
-            NacosDiscoveryProperties properties,
+            CartProperties cartProperties,
             LoadBalancerClientFactory loadBalancerClientFactory
     ) {
         String name = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
-        return new NacosLoadBalancer(
+        // 按实例的实际响应时间和并发数选择实例，同时作为 LoadBalancerLifecycle 统计每次请求的响应时间
+        return new LatencyAwareLoadBalancer(
                 loadBalancerClientFactory.getLazyProvider(name, ServiceInstanceListSupplier.class),
                 name,
-                properties
+                cartProperties.getLoadBalancer()
         );
     }
 }
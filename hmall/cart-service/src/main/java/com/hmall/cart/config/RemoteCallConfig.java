@@ -1,13 +1,16 @@
 package com.hmall.cart.config;
 
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RemoteCallConfig {
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        // 与 Feign 共用同一个连接池
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
     }
 }
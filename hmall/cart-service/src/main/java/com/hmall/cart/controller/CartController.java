@@ -1,10 +1,14 @@
 package com.hmall.cart.controller;
 
 
+import com.hmall.api.domain.dto.CheckoutQuoteDTO;
 import com.hmall.cart.domain.dto.CartFormDTO;
+import com.hmall.cart.domain.dto.CartOperationDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
+import com.hmall.cart.domain.vo.GuestTokenVO;
 import com.hmall.cart.service.ICartService;
+import com.hmall.common.utils.UserContext;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
@@ -28,16 +32,51 @@ public class CartController {
         cartService.addItem2Cart(cartFormDTO);
     }
 
+    @Operation(summary = "批量修改购物车", description = "在一个事务中依次执行加入、修改数量、删除操作，返回修改后的购物车")
+    @PostMapping("/batch")
+    public List<CartVO> batchUpdateCart(@RequestBody List<CartOperationDTO> operations){
+        return cartService.batchUpdateCart(operations);
+    }
+
+    @Operation(summary = "创建游客身份", description = "未登录时创建一个游客身份，返回游客id和签名的游客令牌。" +
+            "之后未登录时在请求头 guest-token 中携带令牌，即可在游客身份下添加、查询、修改、删除购物车")
+    @PostMapping("/guest")
+    public GuestTokenVO createGuest(){
+        return cartService.createGuest();
+    }
+
+    @Operation(summary = "合并游客购物车", description = "登录后把游客身份下的购物车合并到当前用户，需要提交创建游客身份时签发的令牌，返回合并后的购物车")
+    @PostMapping("/merge")
+    public List<CartVO> mergeGuestCart(@Parameter(description = "游客令牌") @RequestParam("guestToken") String guestToken){
+        return cartService.mergeGuestCart(guestToken);
+    }
+
+    @Operation(summary = "结算前校验", description = "一次校验选中商品的状态、库存和最新价格，返回有效期很短的签名报价单，下单时提交报价单即可")
+    @Parameters({
+            @Parameter(name = "ids", description = "购物车条目id集合", required = true)
+    })
+    @PostMapping("/checkout-quote")
+    public CheckoutQuoteDTO createCheckoutQuote(@RequestParam("ids") List<Long> ids){
+        return cartService.createCheckoutQuote(ids);
+    }
+
+    @Operation(summary = "清理已下单的商品", description = "下单后删除购物车中已下单的商品，同一个订单只清理一次，重复请求直接忽略")
+    @DeleteMapping("/orders/{orderId}")
+    public void clearOrderedItems(@Parameter(description = "订单id") @PathVariable("orderId") Long orderId,
+                                  @Parameter(description = "商品id集合") @RequestParam("itemIds") List<Long> itemIds){
+        cartService.clearOrderedItems(UserContext.getUser(), orderId, itemIds);
+    }
+
     @Operation(summary = "更新购物车数据")
     @PutMapping
     public void updateCart(@RequestBody Cart cart){
-        cartService.updateById(cart);
+        cartService.updateCart(cart);
     }
 
     @Operation(summary = "删除购物车中商品")
     @DeleteMapping("{id}")
     public void deleteCartItem(@Parameter(description = "购物车条目id") @PathVariable("id") Long id){
-        cartService.removeById(id);
+        cartService.removeCartItem(id);
     }
 
     @Operation(summary = "查询购物车列表")
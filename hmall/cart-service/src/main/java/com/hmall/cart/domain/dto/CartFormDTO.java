@@ -1,6 +1,7 @@
 package com.hmall.cart.domain.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
 import lombok.Data;
 
 @Data
@@ -16,4 +17,7 @@ public class CartFormDTO {
     private Integer price;
     @Schema(description = "商品图片")
     private String image;
+    @Schema(description = "加入的数量，默认为1")
+    @Min(value = 1, message = "数量不能小于1")
+    private Integer num;
 }
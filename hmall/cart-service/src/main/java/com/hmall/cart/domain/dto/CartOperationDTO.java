@@ -0,0 +1,24 @@
+package com.hmall.cart.domain.dto;
+
+import com.hmall.cart.enums.CartOperationType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "购物车批量操作中的一项操作")
+public class CartOperationDTO {
+    @Schema(description = "操作类型：ADD-加入，UPDATE-修改数量，REMOVE-删除")
+    private CartOperationType type;
+    @Schema(description = "商品id")
+    private Long itemId;
+    @Schema(description = "数量，ADD 时为增加的数量，默认为1，UPDATE 时为修改后的数量")
+    private Integer num;
+    @Schema(description = "商品标题，ADD 新商品时需要")
+    private String name;
+    @Schema(description = "商品动态属性键值集，ADD 新商品时需要")
+    private String spec;
+    @Schema(description = "价格,单位：分，ADD 新商品时需要")
+    private Integer price;
+    @Schema(description = "商品图片，ADD 新商品时需要")
+    private String image;
+}
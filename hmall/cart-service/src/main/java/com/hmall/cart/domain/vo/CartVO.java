@@ -26,6 +26,8 @@ public class CartVO {
     private Integer status = 1;
     @Schema(description = "商品最新库存")
     private Integer stock = 10;
+    @Schema(description = "商品最新信息是否过期，商品服务超时时使用最近一次查到的信息")
+    private Boolean stale = false;
     @Schema(description = "商品图片")
     private String image;
     @Schema(description = "创建时间")
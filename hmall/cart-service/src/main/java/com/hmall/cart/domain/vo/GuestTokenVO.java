@@ -0,0 +1,17 @@
+package com.hmall.cart.domain.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+@Schema(description = "游客身份")
+public class GuestTokenVO {
+    @Schema(description = "游客id，为负数")
+    private Long guestId;
+    @Schema(description = "游客令牌，登录后合并购物车时提交")
+    private String token;
+    @Schema(description = "令牌的过期时间，毫秒时间戳")
+    private Long expireTime;
+}
@@ -0,0 +1,16 @@
+package com.hmall.cart.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum CartOperationType {
+    ADD("加入购物车，商品已存在则累加数量"),
+    UPDATE("修改商品数量"),
+    REMOVE("从购物车删除商品"),
+    ;
+    private final String desc;
+
+    CartOperationType(String desc) {
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,16 @@
+package com.hmall.cart.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum CartStoreType {
+    DB("直接读写 MySQL 的 cart 表"),
+    REDIS("每个用户一个 Redis hash，异步批量回写 MySQL"),
+    LOCAL("每个用户一个本地 Map，异步批量回写 MySQL，只适合单实例和测试"),
+    ;
+    private final String desc;
+
+    CartStoreType(String desc) {
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,35 @@
+package com.hmall.cart.interceptor;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmall.cart.utils.GuestTokenSigner;
+import com.hmall.common.utils.UserContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 未登录的请求携带游客令牌时，校验令牌后以游客id 作为当前用户，购物车的增删改查都写在游客身份下。
+ * 已登录的请求忽略游客令牌，UserContext 由 UserInfoInterceptor 在请求结束时统一清理
+ */
+@RequiredArgsConstructor
+public class GuestTokenInterceptor implements HandlerInterceptor {
+
+    public static final String GUEST_TOKEN_HEADER = "guest-token";
+
+    private final GuestTokenSigner guestTokenSigner;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 1. 已登录时以登录用户为准，在 UserInfoInterceptor 之后执行
+        if (UserContext.getUser() != null) {
+            return true;
+        }
+        // 2. 校验游客令牌，签名错误或已过期时返回 400
+        String token = request.getHeader(GUEST_TOKEN_HEADER);
+        if (StrUtil.isNotBlank(token)) {
+            UserContext.setUser(guestTokenSigner.verify(token));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.hmall.cart.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁的令牌桶。
+ * <p>
+ * 不单独保存令牌数，而是只保存一个"理论上下一个请求到达的时间"（GCRA 算法），
+ * 每次请求把这个时间向后推一个发放间隔，推到超过当前时间 + 桶容量对应的时间时说明令牌用完了。
+ * 状态只有一个 long，用 CAS 更新即可，不需要加锁
+ */
+public class TokenBucket {
+
+    /**
+     * 发放一个令牌的间隔，纳秒
+     */
+    private final long interval;
+    /**
+     * 桶中令牌全部发放完需要的时间，纳秒
+     */
+    private final long capacity;
+    private final AtomicLong nextTime;
+
+    public TokenBucket(int permitsPerSecond, int burst) {
+        this.interval = 1_000_000_000L / permitsPerSecond;
+        this.capacity = interval * burst;
+        // 初始时桶是满的
+        this.nextTime = new AtomicLong(System.nanoTime() - capacity);
+    }
+
+    /**
+     * 尝试获取一个令牌，获取失败立即返回 false
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = nextTime.get();
+            // 1. 长时间没有请求时，最多积攒满一桶令牌
+            long next = Math.max(current, now - capacity) + interval;
+            // 2. 令牌不够
+            if (next - now > 0) {
+                return false;
+            }
+            // 3. 成功更新时获取到令牌，失败说明有并发请求，重试
+            if (nextTime.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.hmall.cart.limit;
+
+import com.hmall.common.exception.TooManyRequestsException;
+import com.hmall.common.utils.UserContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+@Slf4j
+@RequiredArgsConstructor
+public class UserRateLimitInterceptor implements HandlerInterceptor {
+
+    private final UserRateLimiter userRateLimiter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 1. 获取用户，在 UserInfoInterceptor 之后执行
+        Long userId = UserContext.getUser();
+        if (userId == null) {
+            return true;
+        }
+        // 2. 令牌不足时直接拒绝，不再访问数据库
+        if (!userRateLimiter.tryAcquire(userId)) {
+            log.warn("用户 {} 请求过于频繁，uri：{}", userId, request.getRequestURI());
+            throw new TooManyRequestsException("请求过于频繁，请稍后再试");
+        }
+        return true;
+    }
+}
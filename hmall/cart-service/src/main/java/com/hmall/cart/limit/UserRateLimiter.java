@@ -0,0 +1,33 @@
+package com.hmall.cart.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.cart.config.CartProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 按用户限流，每个用户一个令牌桶
+ */
+@Component
+public class UserRateLimiter {
+
+    private final CartProperties.Protection properties;
+    private final Cache<Long, TokenBucket> buckets;
+
+    public UserRateLimiter(CartProperties cartProperties) {
+        this.properties = cartProperties.getProtection();
+        // 桶满之后的令牌桶和新建的没有区别，可以直接淘汰
+        long idle = Duration.ofSeconds(1).toNanos() * properties.getBurst() / properties.getPermitsPerSecond();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxUsers())
+                .expireAfterAccess(Duration.ofNanos(idle).plusSeconds(1))
+                .build();
+    }
+
+    public boolean tryAcquire(Long userId) {
+        return buckets.get(userId, id -> new TokenBucket(properties.getPermitsPerSecond(), properties.getBurst()))
+                .tryAcquire();
+    }
+}
@@ -0,0 +1,33 @@
+package com.hmall.cart.listener;
+
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.cart.cache.ItemSnapshotCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class ItemChangeListener {
+
+    private final ItemSnapshotCache itemSnapshotCache;
+
+    /**
+     * 每个实例绑定一个匿名队列（排他、自动删除），保证每个实例的商品快照都能更新
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = ItemMQConstants.ITEM_EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMQConstants.ITEM_PRICE_CHANGED_KEY
+    ))
+    public void listenItemPriceChanged(List<ItemPriceStockDTO> items) {
+        itemSnapshotCache.applyChanges(items);
+    }
+}
@@ -0,0 +1,35 @@
+package com.hmall.cart.listener;
+
+import com.hmall.api.constants.TradeMQConstants;
+import com.hmall.api.domain.dto.OrderCreatedDTO;
+import com.hmall.cart.service.ICartService;
+import com.hmall.common.utils.CollUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 异步下单成功后清理购物车中已下单的商品，按订单id 幂等，重复消息不会删除用户之后重新加入的商品
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderCreatedListener {
+
+    private final ICartService cartService;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = "cart.order.created.queue", durable = "true"),
+            exchange = @Exchange(name = TradeMQConstants.TRADE_EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = TradeMQConstants.ORDER_CREATED_KEY
+    ))
+    public void listenOrderCreated(OrderCreatedDTO order) {
+        if (order.getOrderId() == null || order.getUserId() == null || CollUtils.isEmpty(order.getItemIds())) {
+            return;
+        }
+        cartService.clearOrderedItems(order.getUserId(), order.getOrderId(), order.getItemIds());
+    }
+}
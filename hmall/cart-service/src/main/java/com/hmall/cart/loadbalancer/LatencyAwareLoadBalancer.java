@@ -0,0 +1,203 @@
+package com.hmall.cart.loadbalancer;
+
+import cn.hutool.core.util.NumberUtil;
+import com.hmall.cart.config.CartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.*;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 根据实例的实际响应情况选择实例的负载均衡器：
+ * <ul>
+ *     <li>记录每个实例响应时间的滑动平均值（EWMA）和正在处理的请求数</li>
+ *     <li>每次随机取两个实例，选择 响应时间 * (处理中请求数 + 1) / 权重 更小的一个（power of two choices）</li>
+ *     <li>连续超时或返回 5xx 的实例会被暂时摘除</li>
+ * </ul>
+ * 同时作为 {@link LoadBalancerLifecycle}，由 Feign 在请求开始和结束时回调，用于统计响应时间
+ */
+@Slf4j
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer,
+        LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    /**
+     * Nacos 实例权重在元数据中的 key
+     */
+    private static final String WEIGHT_KEY = "nacos.weight";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final String serviceId;
+    private final CartProperties.LoadBalancer properties;
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+    public LatencyAwareLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+                                    String serviceId, CartProperties.LoadBalancer properties) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+        this.properties = properties;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(this::choose);
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            log.warn("服务 {} 没有可用的实例", serviceId);
+            return new EmptyResponse();
+        }
+        // 1. 清理已下线实例的统计数据
+        if (stats.size() > instances.size()) {
+            Set<String> keys = instances.stream().map(this::key).collect(Collectors.toSet());
+            stats.keySet().retainAll(keys);
+        }
+        // 2. 排除被摘除的实例，全部被摘除时忽略摘除，避免没有实例可用
+        long now = System.nanoTime();
+        List<ServiceInstance> candidates = instances.stream()
+                .filter(instance -> !stats(instance).isEjected(now))
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            candidates = instances;
+        }
+        if (candidates.size() == 1) {
+            return new DefaultResponse(candidates.get(0));
+        }
+        // 3. 随机取两个不同的实例，选择负载更低的一个
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(candidates.size());
+        int j = random.nextInt(candidates.size() - 1);
+        if (j >= i) {
+            j++;
+        }
+        ServiceInstance first = candidates.get(i);
+        ServiceInstance second = candidates.get(j);
+        return new DefaultResponse(score(first) <= score(second) ? first : second);
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (request.getContext() instanceof TimedRequestContext context) {
+            context.setRequestStartTime(System.nanoTime());
+        }
+        if (lbResponse != null && lbResponse.hasServer()) {
+            stats(lbResponse.getServer()).inFlight.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer()
+                || completionContext.status() == CompletionContext.Status.DISCARD) {
+            return;
+        }
+        InstanceStats instanceStats = stats.get(key(lbResponse.getServer()));
+        if (instanceStats == null) {
+            // 实例已经下线
+            return;
+        }
+        instanceStats.inFlight.decrementAndGet();
+        // 1. 计算响应时间
+        Object context = completionContext.getLoadBalancerRequest() == null
+                ? null : completionContext.getLoadBalancerRequest().getContext();
+        if (!(context instanceof TimedRequestContext timedContext) || timedContext.getRequestStartTime() == 0) {
+            return;
+        }
+        long latency = System.nanoTime() - timedContext.getRequestStartTime();
+        // 2. 请求异常（包括超时）或服务端 5xx 都算失败
+        boolean success = completionContext.status() == CompletionContext.Status.SUCCESS
+                && !(completionContext.getClientResponse() instanceof ResponseData data
+                && data.getHttpStatus() != null && data.getHttpStatus().is5xxServerError());
+        instanceStats.record(latency, success);
+    }
+
+    /**
+     * 记录一次请求的结果
+     */
+    void record(ServiceInstance instance, long latencyNanos, boolean success) {
+        stats(instance).record(latencyNanos, success);
+    }
+
+    private double score(ServiceInstance instance) {
+        InstanceStats instanceStats = stats(instance);
+        double latency = instanceStats.latency < 0
+                ? properties.getInitialLatency().toNanos() : instanceStats.latency;
+        return latency * (instanceStats.inFlight.get() + 1) / weight(instance);
+    }
+
+    private double weight(ServiceInstance instance) {
+        String weight = instance.getMetadata() == null ? null : instance.getMetadata().get(WEIGHT_KEY);
+        if (weight == null || !NumberUtil.isNumber(weight)) {
+            return 1;
+        }
+        double w = Double.parseDouble(weight);
+        return w > 0 ? w : 1;
+    }
+
+    private InstanceStats stats(ServiceInstance instance) {
+        return stats.computeIfAbsent(key(instance), k -> new InstanceStats(k));
+    }
+
+    private String key(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    private class InstanceStats {
+        private final String key;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        /**
+         * 响应时间的滑动平均值，单位纳秒，-1 表示还没有数据
+         */
+        private volatile double latency = -1;
+        private int failures;
+        private volatile long ejectedUntil;
+
+        InstanceStats(String key) {
+            this.key = key;
+        }
+
+        boolean isEjected(long now) {
+            return ejectedUntil != 0 && now - ejectedUntil < 0;
+        }
+
+        synchronized void record(long latencyNanos, boolean success) {
+            // 1. 更新响应时间的滑动平均值
+            latency = latency < 0 ? latencyNanos : latency + properties.getDecay() * (latencyNanos - latency);
+            // 2. 连续失败达到阈值时摘除实例
+            if (success) {
+                failures = 0;
+                return;
+            }
+            if (++failures >= properties.getFailureThreshold()) {
+                failures = 0;
+                ejectedUntil = System.nanoTime() + properties.getEjectTime().toNanos();
+                log.warn("服务 {} 的实例 {} 连续失败 {} 次，摘除 {}",
+                        serviceId, key, properties.getFailureThreshold(), properties.getEjectTime());
+            }
+        }
+    }
+}
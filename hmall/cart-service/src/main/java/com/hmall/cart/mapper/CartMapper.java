@@ -2,12 +2,47 @@ package com.hmall.cart.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.hmall.cart.domain.po.Cart;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
-import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 
 public interface CartMapper extends BaseMapper<Cart> {
 
-    @Update("UPDATE cart SET num = num + 1 WHERE user_id = #{userId} AND item_id = #{itemId}")
-    void updateNum(@Param("itemId") Long itemId, @Param("userId") Long userId);
+    /**
+     * 一条语句完成加入购物车：商品已在购物车中则累加数量，否则在购物车未满时新增。
+     * 依赖 cart 表上 (user_id, item_id) 的唯一索引 uk_user_item
+     * @return 新增返回 1，累加数量返回 2，购物车已满返回 0
+     */
+    @Insert("INSERT INTO cart (user_id, item_id, num, name, spec, price, image, create_time, update_time) " +
+            "SELECT #{cart.userId}, #{cart.itemId}, #{cart.num}, #{cart.name}, #{cart.spec}, #{cart.price}, #{cart.image}, NOW(), NOW() " +
+            "FROM DUAL WHERE (SELECT COUNT(*) FROM cart WHERE user_id = #{cart.userId}) < #{maxAmount} " +
+            "OR EXISTS (SELECT 1 FROM cart WHERE user_id = #{cart.userId} AND item_id = #{cart.itemId}) " +
+            "ON DUPLICATE KEY UPDATE num = num + #{cart.num}, update_time = NOW()")
+    int upsertNum(@Param("cart") Cart cart, @Param("maxAmount") Integer maxAmount);
+
+    /**
+     * 带着条目id插入，用于把 Redis 等存储中的购物车回写数据库
+     */
+    @Insert("INSERT INTO cart (id, user_id, item_id, num, name, spec, price, image, create_time, update_time) " +
+            "VALUES (#{id}, #{userId}, #{itemId}, #{num}, #{name}, #{spec}, #{price}, #{image}, #{createTime}, #{updateTime})")
+    void insertWithId(Cart cart);
+
+    /**
+     * 把 fromUserId 的购物车合并到 toUserId，已存在的商品累加数量，同样依赖唯一索引 uk_user_item
+     */
+    @Insert("INSERT INTO cart (user_id, item_id, num, name, spec, price, image, create_time, update_time) " +
+            "SELECT * FROM (SELECT #{toUserId} AS user_id, item_id, num, name, spec, price, image, NOW() AS create_time, NOW() AS update_time " +
+            "FROM cart WHERE user_id = #{fromUserId}) AS g " +
+            "ON DUPLICATE KEY UPDATE num = cart.num + g.num, update_time = NOW()")
+    int mergeCart(@Param("fromUserId") Long fromUserId, @Param("toUserId") Long toUserId);
+
+    /**
+     * 按 id 顺序分页查询长期未修改的购物车条目，只返回 id 和用户id
+     */
+    @Select("SELECT id, user_id FROM cart WHERE id > #{lastId} AND update_time < #{deadline} ORDER BY id LIMIT #{limit}")
+    List<Cart> selectExpired(@Param("lastId") Long lastId, @Param("deadline") LocalDateTime deadline, @Param("limit") int limit);
 }
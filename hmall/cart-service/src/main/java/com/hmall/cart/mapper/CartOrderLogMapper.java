@@ -0,0 +1,22 @@
+package com.hmall.cart.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+public interface CartOrderLogMapper {
+
+    /**
+     * 记录已清理购物车的订单，订单已存在时影响行数为 0
+     */
+    @Insert("INSERT IGNORE INTO cart_order_log (order_id, create_time) VALUES (#{orderId}, NOW())")
+    int insertIgnore(@Param("orderId") Long orderId);
+
+    /**
+     * 删除早于指定时间的清理记录
+     */
+    @Delete("DELETE FROM cart_order_log WHERE create_time < #{deadline} LIMIT #{limit}")
+    int deleteBefore(@Param("deadline") LocalDateTime deadline, @Param("limit") int limit);
+}
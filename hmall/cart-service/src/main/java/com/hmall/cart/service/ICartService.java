@@ -1,9 +1,12 @@
 package com.hmall.cart.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmall.api.domain.dto.CheckoutQuoteDTO;
 import com.hmall.cart.domain.dto.CartFormDTO;
+import com.hmall.cart.domain.dto.CartOperationDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
+import com.hmall.cart.domain.vo.GuestTokenVO;
 import java.util.Collection;
 import java.util.List;
 
@@ -13,5 +16,25 @@ public interface ICartService extends IService<Cart> {
 
     List<CartVO> queryMyCarts();
 
+    List<CartVO> batchUpdateCart(List<CartOperationDTO> operations);
+
+    GuestTokenVO createGuest();
+
+    List<CartVO> mergeGuestCart(String guestToken);
+
+    CheckoutQuoteDTO createCheckoutQuote(List<Long> ids);
+
+
+    void updateCart(Cart cart);
+
+    void removeCartItem(Long id);
+
     void removeByItemIds(Collection<Long> itemIds);
+
+    void removeByItemIds(Long userId, Collection<Long> itemIds);
+
+    /**
+     * 下单后清理用户购物车中已下单的商品，按订单id 幂等，重复消息不会删除用户之后重新加入的商品
+     */
+    void clearOrderedItems(Long userId, Long orderId, Collection<Long> itemIds);
 }
@@ -1,39 +1,47 @@
 package com.hmall.cart.service.impl;
 
-import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmall.api.client.ItemClient;
+import com.hmall.api.domain.dto.CheckoutQuoteDTO;
+import com.hmall.api.domain.dto.CheckoutQuoteItemDTO;
 import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.api.utils.CheckoutQuoteSigner;
+import com.hmall.cart.cache.ItemSnapshotCache;
 import com.hmall.cart.config.CartProperties;
 import com.hmall.cart.domain.dto.CartFormDTO;
+import com.hmall.cart.domain.dto.CartOperationDTO;
 import com.hmall.cart.domain.po.Cart;
 import com.hmall.cart.domain.vo.CartVO;
+import com.hmall.cart.domain.vo.GuestTokenVO;
 import com.hmall.cart.mapper.CartMapper;
+import com.hmall.cart.mapper.CartOrderLogMapper;
 import com.hmall.cart.service.ICartService;
+import com.hmall.cart.store.CartRequestCoalescer;
+import com.hmall.cart.store.CartStore;
+import com.hmall.cart.utils.GuestTokenSigner;
+import com.hmall.common.exception.BadRequestException;
 import com.hmall.common.exception.BizIllegalException;
 import com.hmall.common.utils.BeanUtils;
 import com.hmall.common.utils.CollUtils;
 import com.hmall.common.utils.UserContext;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements ICartService {
@@ -42,34 +50,42 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
 
     private final CartProperties cartProperties;
 
+    private final CartStore cartStore;
+
+    private final Executor cartEnrichExecutor;
+
+    private final ItemSnapshotCache itemSnapshotCache;
+
+    private final CheckoutQuoteSigner checkoutQuoteSigner;
+
+    private final CartRequestCoalescer cartRequestCoalescer;
+
+    private final GuestTokenSigner guestTokenSigner;
+
+    private final CartOrderLogMapper cartOrderLogMapper;
+
     @Override
     public void addItem2Cart(CartFormDTO cartFormDTO) {
         // 1.获取登录用户
         Long userId = UserContext.getUser();
 
-        // 2.判断是否已经存在
-        if(checkItemExists(cartFormDTO.getItemId(), userId)){
-            // 2.1.存在，则更新数量
-            baseMapper.updateNum(cartFormDTO.getItemId(), userId);
-            return;
-        }
-        // 2.2.不存在，判断是否超过购物车数量
-        checkCartsFull(userId);
-
-        // 3.新增购物车条目
-        // 3.1.转换PO
+        // 2.转换PO
         Cart cart = BeanUtils.copyBean(cartFormDTO, Cart.class);
-        // 3.2.保存当前用户
         cart.setUserId(userId);
-        // 3.3.保存到数据库
-        save(cart);
+        if (cart.getNum() == null) {
+            cart.setNum(1);
+        }
+        // 3.已存在则累加数量，不存在则在购物车未满时新增，同一商品的并发加购合并为一次写入
+        if (!cartRequestCoalescer.add(cart, c -> cartStore.add(c, cartProperties.getMaxAmount()))) {
+            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", cartProperties.getMaxAmount()));
+        }
     }
 
     @Override
     public List<CartVO> queryMyCarts() {
         System.out.println("userId:" + UserContext.getUser());
-        // 1. 查询我的购物车列表
-        List<Cart> carts = lambdaQuery().eq(Cart::getUserId, UserContext.getUser()).list();
+        // 1. 查询我的购物车列表，同一用户的并发查询共享一次结果
+        List<Cart> carts = cartRequestCoalescer.list(UserContext.getUser(), cartStore::list);
         if (CollUtils.isEmpty(carts)) {
             return CollUtils.emptyList();
         }
@@ -84,39 +100,61 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
         return vos;
     }
 
+    @Override
+    public List<CartVO> batchUpdateCart(List<CartOperationDTO> operations) {
+        // 1. 一次性应用所有操作
+        Long userId = UserContext.getUser();
+        List<Cart> carts = cartStore.applyBatch(userId, operations, cartProperties.getMaxAmount());
+        cartRequestCoalescer.invalidate(userId);
+        if (CollUtils.isEmpty(carts)) {
+            return CollUtils.emptyList();
+        }
+        // 2. 返回操作后的购物车
+        List<CartVO> vos = BeanUtils.copyList(carts, CartVO.class);
+        handleCartItems(vos);
+        return vos;
+    }
+
+    @Override
+    public GuestTokenVO createGuest() {
+        return guestTokenSigner.issue();
+    }
+
+    @Override
+    public List<CartVO> mergeGuestCart(String guestToken) {
+        // 只合并令牌中的游客id，令牌证明当前请求持有这个游客身份，游客id 不会是注册用户
+        Long guestId = guestTokenSigner.verify(guestToken);
+        Long userId = UserContext.getUser();
+        if (userId == null || userId < 0) {
+            throw new BadRequestException("请先登录后再合并游客购物车");
+        }
+        List<Cart> carts = cartStore.merge(guestId, userId, cartProperties.getMaxAmount());
+        cartRequestCoalescer.invalidate(userId);
+        if (CollUtils.isEmpty(carts)) {
+            return CollUtils.emptyList();
+        }
+        List<CartVO> vos = BeanUtils.copyList(carts, CartVO.class);
+        handleCartItems(vos);
+        return vos;
+    }
+
     private void handleCartItems(List<CartVO> vos) {
         // 1. 获取商品id
         Set<Long> itemIds = vos.stream().map(CartVO::getItemId).collect(Collectors.toSet());
-        /*// 2. 查询商品
-        // 发现 item-service 服务的实力列表
-        List<ServiceInstance> instances = discoveryClient.getInstances("item-service");
-        // 使用负载均衡
-        ServiceInstance instance = instances.get(RandomUtil.randomInt(instances.size()));
-        // 利用 RestTemplate 发起 http 请求，得到 http 的响应
-        ResponseEntity<List<ItemDTO>> response = restTemplate.exchange(
-                // "http://localhost:8081/items?ids={ids}",
-                instance.getUri() + "/items?ids={ids}",
-                HttpMethod.GET,
-                null,
-                new ParameterizedTypeReference<List<ItemDTO>>() {
-                },
-                Map.of("ids", CollUtil.join(itemIds, ","))
-        );
-        // 解析响应
-        if(!response.getStatusCode().is2xxSuccessful()){
-            // 查询失败，直接结束
-            return;
+        // 2. 先查本地商品快照，快照由商品变更消息实时更新
+        Map<Long, ItemPriceStockDTO> itemMap = itemSnapshotCache.getFresh(itemIds);
+        boolean stale = false;
+        Set<Long> missIds = itemIds.stream().filter(id -> !itemMap.containsKey(id)).collect(Collectors.toSet());
+        if (!missIds.isEmpty()) {
+            // 3. 快照中没有的，在专用线程池中查询，超时或失败时使用已经过期的快照
+            Map<Long, ItemPriceStockDTO> items = queryItemPriceStock(missIds);
+            stale = items == null;
+            itemMap.putAll(stale ? itemSnapshotCache.getAny(missIds) : items);
         }
-        List<ItemDTO> items = response.getBody();*/
-        List<ItemDTO> items = itemClient.queryItemByIds(itemIds);
-        if (CollUtils.isEmpty(items)) {
-            return;
-        }
-        // 3. 转为 id 到 item 的 map
-        Map<Long, ItemDTO> itemMap = items.stream().collect(Collectors.toMap(ItemDTO::getId, Function.identity()));
         // 4. 写入 vo
         for (CartVO v : vos) {
-            ItemDTO item = itemMap.get(v.getItemId());
+            v.setStale(stale);
+            ItemPriceStockDTO item = itemMap.get(v.getItemId());
             if (item == null) {
                 continue;
             }
@@ -126,30 +164,129 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
         }
     }
 
+    /**
+     * 在时间预算内查询商品信息，超时、失败或并发数已满时返回 null
+     */
+    private Map<Long, ItemPriceStockDTO> queryItemPriceStock(Set<Long> itemIds) {
+        CartProperties.Enrich enrich = cartProperties.getEnrich();
+        CompletableFuture<List<ItemPriceStockDTO>> future = null;
+        try {
+            future = CompletableFuture.supplyAsync(() -> itemClient.queryItemPriceStock(itemIds), cartEnrichExecutor);
+            List<ItemPriceStockDTO> items = future.get(enrich.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            // 远程调用失败时降级逻辑返回空集合
+            if (CollUtils.isEmpty(items)) {
+                return null;
+            }
+            Map<Long, ItemPriceStockDTO> itemMap = items.stream()
+                    .collect(Collectors.toMap(ItemPriceStockDTO::getId, Function.identity()));
+            itemSnapshotCache.putAll(items);
+            return itemMap;
+        } catch (TimeoutException e) {
+            log.warn("查询商品信息超时，使用已经过期的商品快照，商品id：{}", itemIds);
+            // 超时的请求结束后仍然可以刷新快照
+            future.thenAccept(items -> {
+                if (CollUtils.isNotEmpty(items)) {
+                    itemSnapshotCache.putAll(items);
+                }
+            });
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (RejectedExecutionException | ExecutionException e) {
+            log.error("查询商品信息失败，商品id：{}", itemIds, e);
+            return null;
+        }
+    }
+
+    @Override
+    public CheckoutQuoteDTO createCheckoutQuote(List<Long> ids) {
+        Long userId = UserContext.getUser();
+        // 1. 查询选中的购物车条目
+        Set<Long> idSet = new HashSet<>(ids);
+        List<Cart> carts = cartRequestCoalescer.list(userId, cartStore::list).stream()
+                .filter(cart -> idSet.contains(cart.getId()))
+                .collect(Collectors.toList());
+        if (carts.size() < idSet.size()) {
+            throw new BadRequestException("购物车条目不存在");
+        }
+        // 2. 一次查询所有商品的状态、最新价格和实时库存
+        Set<Long> itemIds = carts.stream().map(Cart::getItemId).collect(Collectors.toSet());
+        List<ItemDTO> items = itemClient.queryItemByIds(itemIds, true);
+        if (CollUtils.isEmpty(items)) {
+            throw new BizIllegalException("商品信息查询失败，请稍后重试");
+        }
+        Map<Long, ItemDTO> itemMap = items.stream().collect(Collectors.toMap(ItemDTO::getId, Function.identity()));
+        // 3. 逐条校验，收集全部问题一次返回
+        List<String> errors = new ArrayList<>();
+        List<CheckoutQuoteItemDTO> quoteItems = new ArrayList<>(carts.size());
+        int total = 0;
+        for (Cart cart : carts) {
+            ItemDTO item = itemMap.get(cart.getItemId());
+            if (item == null || item.getStatus() == null || item.getStatus() != 1) {
+                errors.add("商品【" + cart.getName() + "】已下架");
+                continue;
+            }
+            if (item.getStock() == null || item.getStock() < cart.getNum()) {
+                errors.add("商品【" + item.getName() + "】库存不足，剩余库存：" + (item.getStock() == null ? 0 : item.getStock()));
+                continue;
+            }
+            CheckoutQuoteItemDTO quoteItem = new CheckoutQuoteItemDTO();
+            quoteItem.setItemId(item.getId());
+            quoteItem.setName(item.getName());
+            quoteItem.setSpec(item.getSpec());
+            quoteItem.setImage(item.getImage());
+            quoteItem.setPrice(item.getPrice());
+            quoteItem.setNum(cart.getNum());
+            quoteItems.add(quoteItem);
+            total += item.getPrice() * cart.getNum();
+        }
+        if (!errors.isEmpty()) {
+            throw new BizIllegalException(String.join("；", errors));
+        }
+        // 4. 生成报价单并签名
+        CheckoutQuoteDTO quote = new CheckoutQuoteDTO();
+        quote.setUserId(userId);
+        quote.setItems(quoteItems);
+        quote.setTotalFee(total);
+        checkoutQuoteSigner.sign(quote);
+        return quote;
+    }
+
+    @Override
+    public void updateCart(Cart cart) {
+        Long userId = UserContext.getUser();
+        cartStore.update(userId, cart);
+        cartRequestCoalescer.invalidate(userId);
+    }
+
+    @Override
+    public void removeCartItem(Long id) {
+        Long userId = UserContext.getUser();
+        cartStore.removeById(userId, id);
+        cartRequestCoalescer.invalidate(userId);
+    }
+
     @Override
-    @Transactional
     public void removeByItemIds(Collection<Long> itemIds) {
-        // 1.构建删除条件，userId和itemId
-        QueryWrapper<Cart> queryWrapper = new QueryWrapper<Cart>();
-        queryWrapper.lambda()
-                .eq(Cart::getUserId, UserContext.getUser())
-                .in(Cart::getItemId, itemIds);
-        // 2.删除
-        remove(queryWrapper);
+        removeByItemIds(UserContext.getUser(), itemIds);
     }
 
-    private void checkCartsFull(Long userId) {
-        Long count = lambdaQuery().eq(Cart::getUserId, userId).count();
-        if (count >= cartProperties.getMaxAmount()) {
-            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", cartProperties.getMaxAmount()));
-        }
+    @Override
+    public void removeByItemIds(Long userId, Collection<Long> itemIds) {
+        cartStore.removeByItemIds(userId, itemIds);
+        cartRequestCoalescer.invalidate(userId);
+        // 下单时会调用这里清理购物车，此时把异步回写的购物车立即写入数据库
+        cartStore.flush(userId);
     }
 
-    private boolean checkItemExists(Long itemId, Long userId) {
-        long count = lambdaQuery()
-                .eq(Cart::getUserId, userId)
-                .eq(Cart::getItemId, itemId)
-                .count();
-        return count > 0;
+    @Override
+    @Transactional
+    public void clearOrderedItems(Long userId, Long orderId, Collection<Long> itemIds) {
+        // 同一个本地事务中登记订单id，已登记的订单已经清理过
+        if (cartOrderLogMapper.insertIgnore(orderId) == 0) {
+            return;
+        }
+        removeByItemIds(userId, itemIds);
     }
 }
@@ -0,0 +1,68 @@
+package com.hmall.cart.store;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmall.cart.domain.dto.CartOperationDTO;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.common.exception.BadRequestException;
+import com.hmall.common.exception.BizIllegalException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在内存中把一批操作依次应用到用户的购物车上，全部应用完后只检查一次购物车数量上限
+ */
+final class CartOperations {
+
+    private CartOperations() {
+    }
+
+    /**
+     * @param lines 用户当前的购物车，key 为商品id，会被直接修改
+     */
+    static void apply(Map<Long, Cart> lines, Long userId, List<CartOperationDTO> operations, int maxAmount) {
+        LocalDateTime now = LocalDateTime.now();
+        for (CartOperationDTO op : operations) {
+            if (op.getType() == null || op.getItemId() == null) {
+                throw new BadRequestException("操作类型和商品id不能为空");
+            }
+            Cart line = lines.get(op.getItemId());
+            switch (op.getType()) {
+                case ADD -> {
+                    int num = op.getNum() == null ? 1 : op.getNum();
+                    if (num < 1) {
+                        throw new BadRequestException("数量不能小于1");
+                    }
+                    if (line != null) {
+                        line.setNum(line.getNum() + num).setUpdateTime(now);
+                        continue;
+                    }
+                    lines.put(op.getItemId(), new Cart()
+                            .setUserId(userId)
+                            .setItemId(op.getItemId())
+                            .setNum(num)
+                            .setName(op.getName())
+                            .setSpec(op.getSpec())
+                            .setPrice(op.getPrice())
+                            .setImage(op.getImage())
+                            .setCreateTime(now)
+                            .setUpdateTime(now));
+                }
+                case UPDATE -> {
+                    if (op.getNum() == null || op.getNum() < 1) {
+                        throw new BadRequestException("数量不能小于1");
+                    }
+                    // 商品不在购物车中，忽略
+                    if (line != null) {
+                        line.setNum(op.getNum()).setUpdateTime(now);
+                    }
+                }
+                case REMOVE -> lines.remove(op.getItemId());
+            }
+        }
+        if (lines.size() > maxAmount) {
+            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", maxAmount));
+        }
+    }
+}
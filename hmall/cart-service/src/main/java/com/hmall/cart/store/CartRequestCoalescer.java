@@ -0,0 +1,143 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.domain.po.Cart;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 合并同一个用户的并发请求：
+ * <ul>
+ *     <li>同一用户同时发起的多个查询共享一次查询结果</li>
+ *     <li>同一商品的加购请求在上一次写入期间到达时，累加数量后由一次 num + k 的更新完成</li>
+ * </ul>
+ * 正常用户的请求不会并发，直接执行，不会增加延迟
+ */
+@Component
+public class CartRequestCoalescer {
+
+    private final Map<Long, CompletableFuture<List<Cart>>> reads = new ConcurrentHashMap<>();
+    private final Map<String, AddSlot> adds = new ConcurrentHashMap<>();
+
+    /**
+     * 查询用户的购物车，已经有进行中的查询时等待它的结果。
+     * 返回的集合可能被多个请求共享，不能修改
+     */
+    public List<Cart> list(Long userId, Function<Long, List<Cart>> loader) {
+        CompletableFuture<List<Cart>> future = new CompletableFuture<>();
+        CompletableFuture<List<Cart>> running = reads.putIfAbsent(userId, future);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            List<Cart> carts = loader.apply(userId);
+            future.complete(carts);
+            return carts;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            reads.remove(userId, future);
+        }
+    }
+
+    /**
+     * 用户的购物车被修改后调用，之后的查询不再复用修改前开始的查询
+     */
+    public void invalidate(Long userId) {
+        reads.remove(userId);
+    }
+
+    /**
+     * 加入购物车。同一个商品没有进行中的写入时直接写入；
+     * 否则把数量累加到待写入的请求中，由进行中的写入完成后一次写入
+     *
+     * @param writer 实际的写入逻辑，购物车已满时返回 false
+     */
+    public boolean add(Cart cart, Predicate<Cart> writer) {
+        String key = cart.getUserId() + ":" + cart.getItemId();
+        PendingAdd[] joined = new PendingAdd[1];
+        // 1. 在 compute 中修改槽位，对同一个 key 是原子的
+        adds.compute(key, (k, slot) -> {
+            if (slot == null) {
+                // 没有进行中的写入，由当前请求写入
+                return new AddSlot();
+            }
+            if (slot.pending == null) {
+                slot.pending = new PendingAdd(cart);
+            } else {
+                slot.pending.num += cart.getNum();
+            }
+            joined[0] = slot.pending;
+            return slot;
+        });
+        // 2. 已经合并到待写入的请求中，等待写入结果
+        if (joined[0] != null) {
+            return join(joined[0].result);
+        }
+        // 3. 写入自己的数据，然后依次写入期间累积的请求
+        try {
+            return writer.test(cart);
+        } finally {
+            invalidate(cart.getUserId());
+            drain(key, writer);
+        }
+    }
+
+    private void drain(String key, Predicate<Cart> writer) {
+        while (true) {
+            PendingAdd[] next = new PendingAdd[1];
+            adds.compute(key, (k, slot) -> {
+                next[0] = slot.pending;
+                slot.pending = null;
+                // 没有累积的请求时释放槽位
+                return next[0] == null ? null : slot;
+            });
+            PendingAdd pending = next[0];
+            if (pending == null) {
+                return;
+            }
+            try {
+                Cart merged = pending.cart;
+                merged.setNum(pending.num);
+                pending.result.complete(writer.test(merged));
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            } finally {
+                invalidate(pending.cart.getUserId());
+            }
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static class AddSlot {
+        private PendingAdd pending;
+    }
+
+    private static class PendingAdd {
+        private final Cart cart;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private int num;
+
+        PendingAdd(Cart cart) {
+            this.cart = cart;
+            this.num = cart.getNum();
+        }
+    }
+}
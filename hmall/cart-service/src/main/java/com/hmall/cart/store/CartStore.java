@@ -0,0 +1,57 @@
+package com.hmall.cart.store;
+
+import com.hmall.cart.domain.dto.CartOperationDTO;
+import com.hmall.cart.domain.po.Cart;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 购物车存储，通过 hm.cart.store 选择实现，所有操作都限定在指定用户的购物车内
+ */
+public interface CartStore {
+
+    List<Cart> list(Long userId);
+
+    /**
+     * 加入购物车，商品已存在则累加数量
+     * @return 购物车已满、无法新增商品时返回 false
+     */
+    boolean add(Cart cart, int maxAmount);
+
+    /**
+     * 按购物车条目id更新非空字段
+     */
+    void update(Long userId, Cart cart);
+
+    void removeById(Long userId, Long id);
+
+    void removeByItemIds(Long userId, Collection<Long> itemIds);
+
+    /**
+     * 原子地应用一批操作，购物车数量上限只在全部操作应用后检查一次，不满足时所有操作都不生效
+     * @return 操作后的购物车
+     */
+    List<Cart> applyBatch(Long userId, List<CartOperationDTO> operations, int maxAmount);
+
+    /**
+     * 把 fromUserId 的购物车合并到 toUserId 并清空 fromUserId 的购物车，已存在的商品累加数量，
+     * 合并后超过数量上限时不合并
+     * @return 合并后 toUserId 的购物车
+     */
+    List<Cart> merge(Long fromUserId, Long toUserId, int maxAmount);
+
+    /**
+     * 把用户尚未回写的购物车立即写入 MySQL，例如下单时
+     */
+    default void flush(Long userId) {
+    }
+
+    /**
+     * MySQL 中长期未修改的条目被清理后，同步删除缓存中这些用户在 deadline 之前修改的条目，
+     * 避免缓存中的旧条目在下次回写时重新写回 MySQL
+     */
+    default void evictExpired(Collection<Long> userIds, LocalDateTime deadline) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.hmall.cart.store;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.toolkit.Db;
+import com.hmall.cart.domain.dto.CartOperationDTO;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.common.exception.BizIllegalException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 直接读写 MySQL 的购物车存储，默认的存储方式
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "hm.cart", name = "store", havingValue = "db", matchIfMissing = true)
+public class DbCartStore implements CartStore {
+
+    private final CartMapper cartMapper;
+
+    @Override
+    public List<Cart> list(Long userId) {
+        return cartMapper.selectList(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId));
+    }
+
+    @Override
+    public boolean add(Cart cart, int maxAmount) {
+        return cartMapper.upsertNum(cart, maxAmount) > 0;
+    }
+
+    @Override
+    public void update(Long userId, Cart cart) {
+        Long id = cart.getId();
+        // 不允许修改所属用户
+        cart.setUserId(null);
+        cartMapper.update(cart, Wrappers.<Cart>lambdaUpdate().eq(Cart::getId, id).eq(Cart::getUserId, userId));
+    }
+
+    @Override
+    public void removeById(Long userId, Long id) {
+        cartMapper.delete(Wrappers.<Cart>lambdaQuery().eq(Cart::getId, id).eq(Cart::getUserId, userId));
+    }
+
+    @Override
+    public void removeByItemIds(Long userId, Collection<Long> itemIds) {
+        cartMapper.delete(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId).in(Cart::getItemId, itemIds));
+    }
+
+    @Override
+    @Transactional
+    public List<Cart> applyBatch(Long userId, List<CartOperationDTO> operations, int maxAmount) {
+        // 1. 锁定用户当前的购物车，防止并发修改
+        List<Cart> before = cartMapper.selectList(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId).last("FOR UPDATE"));
+        Map<Long, Integer> oldNums = before.stream().collect(Collectors.toMap(Cart::getId, Cart::getNum));
+        Map<Long, Cart> lines = before.stream().collect(Collectors.toMap(Cart::getItemId, Function.identity()));
+        // 2. 在内存中应用所有操作
+        CartOperations.apply(lines, userId, operations, maxAmount);
+        // 3. 比较前后差异，分别批量删除、新增、修改
+        Set<Long> keepIds = lines.values().stream().map(Cart::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+        List<Long> removeIds = oldNums.keySet().stream().filter(id -> !keepIds.contains(id)).collect(Collectors.toList());
+        List<Cart> inserts = new ArrayList<>();
+        List<Cart> updates = new ArrayList<>();
+        for (Cart line : lines.values()) {
+            if (line.getId() == null) {
+                inserts.add(line);
+            } else if (!line.getNum().equals(oldNums.get(line.getId()))) {
+                updates.add(new Cart().setId(line.getId()).setNum(line.getNum()).setUpdateTime(line.getUpdateTime()));
+            }
+        }
+        if (!removeIds.isEmpty()) {
+            cartMapper.deleteByIds(removeIds);
+        }
+        if (!inserts.isEmpty()) {
+            Db.saveBatch(inserts);
+        }
+        if (!updates.isEmpty()) {
+            Db.updateBatchById(updates);
+        }
+        return new ArrayList<>(lines.values());
+    }
+
+    @Override
+    @Transactional
+    public List<Cart> merge(Long fromUserId, Long toUserId, int maxAmount) {
+        // 1. 一条语句合并，已存在的商品累加数量
+        int rows = cartMapper.mergeCart(fromUserId, toUserId);
+        if (rows == 0) {
+            return list(toUserId);
+        }
+        // 2. 合并后检查一次数量上限，超过则回滚
+        List<Cart> carts = list(toUserId);
+        if (carts.size() > maxAmount) {
+            throw new BizIllegalException(StrUtil.format("用户购物车课程不能超过{}", maxAmount));
+        }
+        // 3. 删除被合并的购物车
+        cartMapper.delete(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, fromUserId));
+        return carts;
+    }
+}
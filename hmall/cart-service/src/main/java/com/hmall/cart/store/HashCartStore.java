@@ -0,0 +1,294 @@
+package com.hmall.cart.store;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.hmall.cart.domain.dto.CartOperationDTO;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.enums.CartOperationType;
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.common.exception.BizIllegalException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 每个用户一个 hash 的购物车存储，field 为商品id，读写都在 hash 中完成。
+ * 修改时先读出购物车和版本号，在内存中修改后只写入有变化的条目，写入时比较版本号，不一致说明被其它请求或实例修改过，重新读取后重试。
+ * 修改过的用户记录到待回写集合中，定时领取一批回写 MySQL：删除这些用户的旧数据，再批量插入 hash 中的最新数据。
+ * 待回写集合和购物车保存在同一个存储中，实例重启不会丢失尚未回写的修改。
+ * hash 不存在时从 MySQL 加载，所以 MySQL 中始终保留一份最多延迟一个回写周期的购物车
+ */
+@Slf4j
+public abstract class HashCartStore implements CartStore {
+
+    private static final int FLUSH_BATCH_SIZE = 500;
+    private static final int MAX_WRITE_RETRIES = 5;
+    /**
+     * 领取待回写用户的租约时间，超过这个时间没有回写完成的用户可以被其它实例重新领取
+     */
+    private static final long FLUSH_LEASE_MILLIS = 30_000;
+
+    protected final CartMapper cartMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final SqlSessionFactory sqlSessionFactory;
+
+    protected HashCartStore(CartMapper cartMapper, TransactionTemplate transactionTemplate, SqlSessionFactory sqlSessionFactory) {
+        this.cartMapper = cartMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.sqlSessionFactory = sqlSessionFactory;
+    }
+
+    /**
+     * 读取用户的购物车和版本号，用户的购物车尚未加载时返回 null
+     */
+    protected abstract Snapshot read(Long userId);
+
+    /**
+     * 版本号一致时写入变化的条目并增加版本号，空购物车也需要记录为已加载
+     * @param version 读取时的版本号，尚未加载时为 0
+     * @param dirty 是否需要回写 MySQL，从 MySQL 加载时不需要
+     * @return 版本号不一致时返回 false，不做任何修改
+     */
+    protected abstract boolean write(Long userId, long version, Map<Long, Cart> changed, Collection<Long> removed, boolean dirty);
+
+    /**
+     * 领取一批待回写的用户，领取后在租约时间内不会被再次领取
+     * @param userId 不为空时只领取这个用户
+     */
+    protected abstract List<Long> claimDirty(Long userId, int count, long leaseMillis);
+
+    /**
+     * 回写完成，版本号没有变化的用户移出待回写集合，变化了的释放租约，等待下次回写
+     * @param versions key 为用户id，value 为回写时读到的版本号
+     */
+    protected abstract void ackDirty(Map<Long, Long> versions);
+
+    /**
+     * 回写失败，释放租约，等待下次回写
+     */
+    protected abstract void releaseDirty(Collection<Long> userIds);
+
+    @Override
+    public List<Cart> list(Long userId) {
+        return new ArrayList<>(getOrLoad(userId).lines().values());
+    }
+
+    @Override
+    public boolean add(Cart cart, int maxAmount) {
+        return modify(cart.getUserId(), lines -> {
+            LocalDateTime now = LocalDateTime.now();
+            Cart line = lines.get(cart.getItemId());
+            if (line != null) {
+                // 1. 已存在，累加数量
+                line.setNum(line.getNum() + cart.getNum());
+                line.setUpdateTime(now);
+                return true;
+            }
+            // 2. 不存在，判断购物车是否已满
+            if (lines.size() >= maxAmount) {
+                return false;
+            }
+            // 回写时带着id插入，保证前端拿到的条目id不会变
+            cart.setId(IdWorker.getId());
+            cart.setCreateTime(now);
+            cart.setUpdateTime(now);
+            lines.put(cart.getItemId(), cart);
+            return true;
+        });
+    }
+
+    @Override
+    public void update(Long userId, Cart cart) {
+        modify(userId, lines -> {
+            Cart line = findById(lines, cart.getId());
+            if (line != null) {
+                BeanUtil.copyProperties(cart, line, CopyOptions.create()
+                        .setIgnoreNullValue(true)
+                        .setIgnoreProperties("id", "userId", "itemId", "createTime"));
+                line.setUpdateTime(LocalDateTime.now());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void removeById(Long userId, Long id) {
+        modify(userId, lines -> {
+            Cart line = findById(lines, id);
+            if (line != null) {
+                lines.remove(line.getItemId());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void removeByItemIds(Long userId, Collection<Long> itemIds) {
+        modify(userId, lines -> lines.keySet().removeAll(itemIds));
+    }
+
+    @Override
+    public List<Cart> applyBatch(Long userId, List<CartOperationDTO> operations, int maxAmount) {
+        // 读到的是一份拷贝，校验失败时直接抛出异常，不会影响存储的数据
+        return modify(userId, lines -> {
+            CartOperations.apply(lines, userId, operations, maxAmount);
+            lines.values().stream().filter(line -> line.getId() == null).forEach(line -> line.setId(IdWorker.getId()));
+            return new ArrayList<>(lines.values());
+        });
+    }
+
+    @Override
+    public List<Cart> merge(Long fromUserId, Long toUserId, int maxAmount) {
+        // 1. 把被合并的购物车转换为一批加入操作
+        List<CartOperationDTO> operations = list(fromUserId).stream().map(line -> {
+            CartOperationDTO op = BeanUtil.copyProperties(line, CartOperationDTO.class);
+            op.setType(CartOperationType.ADD);
+            return op;
+        }).collect(Collectors.toList());
+        if (operations.isEmpty()) {
+            return list(toUserId);
+        }
+        // 2. 合并，超过数量上限时抛出异常，被合并的购物车保持不变
+        List<Cart> carts = applyBatch(toUserId, operations, maxAmount);
+        // 3. 清空被合并的购物车
+        removeByItemIds(fromUserId, operations.stream().map(CartOperationDTO::getItemId).collect(Collectors.toList()));
+        return carts;
+    }
+
+    @Override
+    public void evictExpired(Collection<Long> userIds, LocalDateTime deadline) {
+        for (Long userId : userIds) {
+            // 没有加载到缓存的用户不需要处理，也不为清理而加载
+            if (read(userId) == null) {
+                continue;
+            }
+            // 删除后标记为待回写，回写时以缓存为准覆盖 MySQL 中这个用户的购物车
+            modify(userId, lines -> lines.values().removeIf(line -> line.getUpdateTime().isBefore(deadline)));
+        }
+    }
+
+    @Override
+    public void flush(Long userId) {
+        // 正在被其它实例回写的用户领取不到，由持有租约的实例负责
+        List<Long> userIds = claimDirty(userId, 1, FLUSH_LEASE_MILLIS);
+        if (!userIds.isEmpty()) {
+            persist(userIds);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hm.cart.write-behind-interval:1s}")
+    public void flushDirty() {
+        while (true) {
+            List<Long> userIds = claimDirty(null, FLUSH_BATCH_SIZE, FLUSH_LEASE_MILLIS);
+            if (userIds.isEmpty()) {
+                return;
+            }
+            persist(userIds);
+            if (userIds.size() < FLUSH_BATCH_SIZE) {
+                return;
+            }
+        }
+    }
+
+    private void persist(List<Long> userIds) {
+        // 1. 读取这些用户当前的购物车和版本号，已经过期的不回写，避免清空数据库中的购物车
+        Map<Long, Long> versions = new HashMap<>(userIds.size());
+        List<Long> loadedUserIds = new ArrayList<>(userIds.size());
+        List<Cart> carts = new ArrayList<>();
+        for (Long userId : userIds) {
+            Snapshot snapshot = read(userId);
+            if (snapshot == null) {
+                versions.put(userId, 0L);
+                continue;
+            }
+            versions.put(userId, snapshot.version());
+            loadedUserIds.add(userId);
+            snapshot.lines().values().forEach(line -> carts.add(line.setUserId(userId)));
+        }
+        // 2. 在一个事务中删除旧数据、批量插入新数据
+        if (!loadedUserIds.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    cartMapper.delete(Wrappers.<Cart>lambdaQuery().in(Cart::getUserId, loadedUserIds));
+                    if (!carts.isEmpty()) {
+                        new MybatisBatch<>(sqlSessionFactory, carts, FLUSH_BATCH_SIZE)
+                                .execute(new MybatisBatch.Method<Cart>(CartMapper.class).get("insertWithId"));
+                    }
+                });
+            } catch (Exception e) {
+                // 回写失败，释放租约，下次再回写
+                log.error("购物车回写数据库失败，用户id：{}", userIds, e);
+                releaseDirty(userIds);
+                return;
+            }
+        }
+        // 3. 回写期间又被修改的用户留在待回写集合中
+        ackDirty(versions);
+    }
+
+    private Snapshot getOrLoad(Long userId) {
+        Snapshot snapshot = read(userId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        // 尚未加载，从 MySQL 加载，多个请求同时加载时只有一个能写入
+        Map<Long, Cart> lines = cartMapper.selectList(Wrappers.<Cart>lambdaQuery().eq(Cart::getUserId, userId))
+                .stream()
+                .collect(Collectors.toMap(Cart::getItemId, Function.identity(), (a, b) -> a, HashMap::new));
+        if (write(userId, 0, lines, List.of(), false)) {
+            return new Snapshot(1, lines);
+        }
+        snapshot = read(userId);
+        return snapshot != null ? snapshot : new Snapshot(0, lines);
+    }
+
+    /**
+     * 读取购物车，在拷贝上执行修改，再按版本号写入变化的条目，版本号冲突时重新读取后重试
+     */
+    private <T> T modify(Long userId, Function<Map<Long, Cart>, T> action) {
+        for (int i = 0; i < MAX_WRITE_RETRIES; i++) {
+            // 1. 读取购物车，保留一份修改前的拷贝用于比较
+            Snapshot snapshot = getOrLoad(userId);
+            Map<Long, Cart> lines = new HashMap<>(snapshot.lines().size());
+            snapshot.lines().forEach((itemId, line) -> lines.put(itemId, BeanUtil.copyProperties(line, Cart.class)));
+            T result = action.apply(lines);
+            // 2. 找出变化的条目
+            Map<Long, Cart> changed = new HashMap<>();
+            lines.forEach((itemId, line) -> {
+                if (!line.equals(snapshot.lines().get(itemId))) {
+                    changed.put(itemId, line);
+                }
+            });
+            List<Long> removed = snapshot.lines().keySet().stream()
+                    .filter(itemId -> !lines.containsKey(itemId))
+                    .collect(Collectors.toList());
+            if (changed.isEmpty() && removed.isEmpty()) {
+                return result;
+            }
+            // 3. 按版本号写入
+            if (write(userId, snapshot.version(), changed, removed, true)) {
+                return result;
+            }
+        }
+        throw new BizIllegalException("购物车正在被修改，请稍后重试");
+    }
+
+    private Cart findById(Map<Long, Cart> lines, Long id) {
+        return lines.values().stream().filter(line -> line.getId().equals(id)).findFirst().orElse(null);
+    }
+
+    /**
+     * 用户的购物车和版本号，购物车每修改一次版本号加一
+     */
+    protected record Snapshot(long version, Map<Long, Cart> lines) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.hmall.cart.store;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地内存的购物车存储，数据和待回写的用户都只在当前实例中，实例重启会丢失尚未回写的修改，适合单实例部署和测试
+ */
+@Component
+@ConditionalOnProperty(prefix = "hm.cart", name = "store", havingValue = "local")
+public class LocalCartStore extends HashCartStore {
+
+    private final Map<Long, Snapshot> carts = new ConcurrentHashMap<>();
+    /**
+     * 待回写的用户，value 为租约到期时间，0 表示可以立即领取
+     */
+    private final Map<Long, Long> dirtyUsers = new ConcurrentHashMap<>();
+
+    public LocalCartStore(CartMapper cartMapper, TransactionTemplate transactionTemplate, SqlSessionFactory sqlSessionFactory) {
+        super(cartMapper, transactionTemplate, sqlSessionFactory);
+    }
+
+    @Override
+    protected Snapshot read(Long userId) {
+        Snapshot snapshot = carts.get(userId);
+        return snapshot == null ? null : new Snapshot(snapshot.version(), copy(snapshot.lines()));
+    }
+
+    @Override
+    protected boolean write(Long userId, long version, Map<Long, Cart> changed, Collection<Long> removed, boolean dirty) {
+        boolean[] written = {false};
+        carts.compute(userId, (id, current) -> {
+            if ((current == null ? 0 : current.version()) != version) {
+                return current;
+            }
+            Map<Long, Cart> lines = current == null ? new HashMap<>() : new HashMap<>(current.lines());
+            lines.keySet().removeAll(removed);
+            lines.putAll(copy(changed));
+            written[0] = true;
+            return new Snapshot(version + 1, lines);
+        });
+        if (written[0] && dirty) {
+            dirtyUsers.putIfAbsent(userId, 0L);
+        }
+        return written[0];
+    }
+
+    @Override
+    protected List<Long> claimDirty(Long userId, int count, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        List<Long> claimed = new ArrayList<>();
+        for (Long id : userId != null ? List.of(userId) : dirtyUsers.keySet()) {
+            if (claimed.size() >= count) {
+                break;
+            }
+            Long lease = dirtyUsers.get(id);
+            if (lease != null && lease <= now && dirtyUsers.replace(id, lease, now + leaseMillis)) {
+                claimed.add(id);
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    protected void ackDirty(Map<Long, Long> versions) {
+        versions.forEach((userId, version) -> {
+            // 先移除再比较版本号，和修改时先写数据再标记的顺序配合，不会漏掉回写期间的修改
+            dirtyUsers.remove(userId);
+            Snapshot snapshot = carts.get(userId);
+            if ((snapshot == null ? 0 : snapshot.version()) != version) {
+                dirtyUsers.put(userId, 0L);
+            }
+        });
+    }
+
+    @Override
+    protected void releaseDirty(Collection<Long> userIds) {
+        userIds.forEach(userId -> dirtyUsers.put(userId, 0L));
+    }
+
+    /**
+     * 读写都拷贝一份，和 Redis 的行为保持一致，调用方修改返回的对象不会影响存储的数据
+     */
+    private Map<Long, Cart> copy(Map<Long, Cart> lines) {
+        Map<Long, Cart> copy = new HashMap<>(lines.size());
+        lines.forEach((itemId, line) -> copy.put(itemId, BeanUtil.copyProperties(line, Cart.class)));
+        return copy;
+    }
+}
@@ -0,0 +1,190 @@
+package com.hmall.cart.store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.common.exception.BizIllegalException;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Redis 购物车存储，key 为 cart:{分区}:用户id，field 为商品id，value 为购物车条目的 JSON，version 为版本号。
+ * 修改、领取待回写用户都用 Lua 脚本原子地执行，多个实例同时修改同一个用户的购物车时不会互相覆盖。
+ * <p>
+ * 修改购物车的脚本要同时访问用户的购物车和待回写集合，在 Redis Cluster 中它们必须位于同一个槽。
+ * 用户按 id 分到固定数量的分区，每个分区有自己的待回写集合，同一分区的 key 使用相同的 hash tag，
+ * 不同分区分布在不同的槽上
+ */
+@Component
+@ConditionalOnProperty(prefix = "hm.cart", name = "store", havingValue = "redis")
+public class RedisCartStore extends HashCartStore {
+
+    private static final String KEY_PREFIX = "cart:";
+    /**
+     * 每个分区待回写用户的 zset 的 key 后缀，分数为租约到期时间，0 表示可以立即领取
+     */
+    private static final String DIRTY_SUFFIX = "dirty";
+    /**
+     * 分区数量，修改后已有的 key 会失效，需要先回写完再修改
+     */
+    private static final int PARTITIONS = 16;
+    /**
+     * 版本号 field，空购物车也会有这个 field，用于标记购物车已经从 MySQL 加载过
+     */
+    private static final String VERSION_FIELD = "version";
+
+    private static final DefaultRedisScript<Long> WRITE_SCRIPT;
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT;
+    private static final DefaultRedisScript<Long> ACK_SCRIPT;
+
+    static {
+        WRITE_SCRIPT = new DefaultRedisScript<>();
+        WRITE_SCRIPT.setLocation(new ClassPathResource("lua/cart_write.lua"));
+        WRITE_SCRIPT.setResultType(Long.class);
+        CLAIM_SCRIPT = new DefaultRedisScript<>();
+        CLAIM_SCRIPT.setLocation(new ClassPathResource("lua/cart_claim.lua"));
+        CLAIM_SCRIPT.setResultType(List.class);
+        ACK_SCRIPT = new DefaultRedisScript<>();
+        ACK_SCRIPT.setLocation(new ClassPathResource("lua/cart_ack.lua"));
+        ACK_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final CartProperties cartProperties;
+
+    public RedisCartStore(CartMapper cartMapper, TransactionTemplate transactionTemplate, SqlSessionFactory sqlSessionFactory,
+                          StringRedisTemplate redisTemplate, ObjectMapper objectMapper, CartProperties cartProperties) {
+        super(cartMapper, transactionTemplate, sqlSessionFactory);
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.cartProperties = cartProperties;
+    }
+
+    private static int partition(Long userId) {
+        // 游客id 为负数
+        return Math.floorMod(userId, PARTITIONS);
+    }
+
+    private static String cartKey(Long userId) {
+        return KEY_PREFIX + "{" + partition(userId) + "}:" + userId;
+    }
+
+    private static String dirtyKey(int partition) {
+        return KEY_PREFIX + "{" + partition + "}:" + DIRTY_SUFFIX;
+    }
+
+    @Override
+    protected Snapshot read(Long userId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(cartKey(userId));
+        if (entries.isEmpty()) {
+            return null;
+        }
+        long version = 0;
+        Map<Long, Cart> lines = new HashMap<>(entries.size());
+        try {
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                if (VERSION_FIELD.equals(entry.getKey())) {
+                    version = Long.parseLong(entry.getValue().toString());
+                    continue;
+                }
+                lines.put(Long.valueOf(entry.getKey().toString()), objectMapper.readValue(entry.getValue().toString(), Cart.class));
+            }
+        } catch (JsonProcessingException e) {
+            throw new BizIllegalException("购物车数据格式错误", e);
+        }
+        return new Snapshot(version, lines);
+    }
+
+    @Override
+    protected boolean write(Long userId, long version, Map<Long, Cart> changed, Collection<Long> removed, boolean dirty) {
+        // 参数依次为：版本号、有效期、用户id、是否回写、删除的数量、删除的商品id、写入的商品id和条目
+        List<String> args = new ArrayList<>(5 + removed.size() + changed.size() * 2);
+        args.add(String.valueOf(version));
+        args.add(String.valueOf(cartProperties.getRedisTtl().toSeconds()));
+        args.add(userId.toString());
+        args.add(dirty ? "1" : "0");
+        args.add(String.valueOf(removed.size()));
+        removed.forEach(itemId -> args.add(itemId.toString()));
+        try {
+            for (Map.Entry<Long, Cart> entry : changed.entrySet()) {
+                args.add(entry.getKey().toString());
+                args.add(objectMapper.writeValueAsString(entry.getValue()));
+            }
+        } catch (JsonProcessingException e) {
+            throw new BizIllegalException("购物车数据格式错误", e);
+        }
+        Long result = redisTemplate.execute(WRITE_SCRIPT, List.of(cartKey(userId), dirtyKey(partition(userId))), args.toArray());
+        return result != null && result == 1;
+    }
+
+    @Override
+    protected List<Long> claimDirty(Long userId, int count, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        // 1. 只领取一个用户时只访问这个用户所在的分区
+        if (userId != null) {
+            return claimDirty(partition(userId), now, leaseMillis, 1, userId.toString());
+        }
+        // 2. 从随机的分区开始依次领取，直到领够数量，多个实例不会总是争抢同一个分区
+        List<Long> claimed = new ArrayList<>(count);
+        int start = ThreadLocalRandom.current().nextInt(PARTITIONS);
+        for (int i = 0; i < PARTITIONS && claimed.size() < count; i++) {
+            claimed.addAll(claimDirty((start + i) % PARTITIONS, now, leaseMillis, count - claimed.size(), null));
+        }
+        return claimed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> claimDirty(int partition, long now, long leaseMillis, int count, String userId) {
+        List<String> args = new ArrayList<>(4);
+        args.add(String.valueOf(now));
+        args.add(String.valueOf(now + leaseMillis));
+        args.add(String.valueOf(count));
+        if (userId != null) {
+            args.add(userId);
+        }
+        List<Object> ids = redisTemplate.execute(CLAIM_SCRIPT, List.of(dirtyKey(partition)), args.toArray());
+        if (ids == null) {
+            return List.of();
+        }
+        return ids.stream().map(id -> Long.valueOf(id.toString())).collect(Collectors.toList());
+    }
+
+    @Override
+    protected void ackDirty(Map<Long, Long> versions) {
+        // 每个分区执行一次脚本
+        Map<Integer, List<Long>> partitions = versions.keySet().stream()
+                .collect(Collectors.groupingBy(RedisCartStore::partition));
+        partitions.forEach((partition, userIds) -> {
+            List<String> keys = new ArrayList<>(userIds.size() + 1);
+            List<String> args = new ArrayList<>(userIds.size() * 2);
+            keys.add(dirtyKey(partition));
+            for (Long userId : userIds) {
+                keys.add(cartKey(userId));
+                args.add(userId.toString());
+                args.add(versions.get(userId).toString());
+            }
+            redisTemplate.execute(ACK_SCRIPT, keys, args.toArray());
+        });
+    }
+
+    @Override
+    protected void releaseDirty(Collection<Long> userIds) {
+        Map<Integer, Set<ZSetOperations.TypedTuple<String>>> partitions = userIds.stream()
+                .collect(Collectors.groupingBy(RedisCartStore::partition, Collectors.mapping(
+                        userId -> ZSetOperations.TypedTuple.of(userId.toString(), 0D), Collectors.toSet())));
+        partitions.forEach((partition, members) -> redisTemplate.opsForZSet().add(dirtyKey(partition), members));
+    }
+}
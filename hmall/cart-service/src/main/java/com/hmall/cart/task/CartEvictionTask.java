@@ -0,0 +1,110 @@
+package com.hmall.cart.task;
+
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.domain.po.Cart;
+import com.hmall.cart.mapper.CartMapper;
+import com.hmall.cart.mapper.CartOrderLogMapper;
+import com.hmall.cart.store.CartStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 清理长期未修改的购物车条目：按 id 顺序分批查询、分批删除，每批之间停顿一段时间，
+ * 每次删除只锁定少量行，不会长时间阻塞正常的购物车读写。
+ * Redis、本地存储方式下同时删除缓存中的过期条目，否则下次回写会把它们重新写回 MySQL
+ */
+@Slf4j
+@Component
+public class CartEvictionTask {
+
+    private final CartMapper cartMapper;
+    private final CartOrderLogMapper cartOrderLogMapper;
+    private final CartStore cartStore;
+    private final CartProperties cartProperties;
+    /**
+     * 累计删除的条目数量
+     */
+    private final Counter purgedCounter;
+    /**
+     * 批次之间的停顿时间
+     */
+    private final Timer pauseTimer;
+
+    public CartEvictionTask(CartMapper cartMapper, CartOrderLogMapper cartOrderLogMapper, CartStore cartStore,
+                            CartProperties cartProperties, MeterRegistry meterRegistry) {
+        this.cartMapper = cartMapper;
+        this.cartOrderLogMapper = cartOrderLogMapper;
+        this.cartStore = cartStore;
+        this.cartProperties = cartProperties;
+        this.purgedCounter = Counter.builder("cart.eviction.purged")
+                .description("过期购物车条目的删除数量")
+                .register(meterRegistry);
+        this.pauseTimer = Timer.builder("cart.eviction.pause")
+                .description("过期购物车清理任务在批次之间的停顿时间")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${hm.cart.eviction.cron:0 0 3 * * ?}")
+    public void evictExpiredCarts() {
+        CartProperties.Eviction eviction = cartProperties.getEviction();
+        if (!eviction.getEnabled()) {
+            return;
+        }
+        LocalDateTime deadline = LocalDateTime.now().minus(eviction.getTtl());
+        long lastId = 0;
+        long purged = 0;
+        long begin = System.currentTimeMillis();
+        while (true) {
+            // 1. 查询下一批过期条目的 id 和用户id
+            List<Cart> carts = cartMapper.selectExpired(lastId, deadline, eviction.getBatchSize());
+            if (carts.isEmpty()) {
+                break;
+            }
+            // 2. 按主键删除，每批自动提交
+            List<Long> ids = carts.stream().map(Cart::getId).collect(Collectors.toList());
+            int rows = cartMapper.deleteByIds(ids);
+            purged += rows;
+            purgedCounter.increment(rows);
+            // 3. 删除缓存中这些用户的过期条目
+            cartStore.evictExpired(carts.stream().map(Cart::getUserId).collect(Collectors.toSet()), deadline);
+            lastId = ids.get(ids.size() - 1);
+            if (ids.size() < eviction.getBatchSize()) {
+                break;
+            }
+            // 4. 停顿一段时间再删除下一批
+            if (!pause(eviction.getPause())) {
+                break;
+            }
+        }
+        // 5. 同一个订单的重复清理请求不会间隔这么久，过期的清理记录一并删除
+        while (cartOrderLogMapper.deleteBefore(deadline, eviction.getBatchSize()) == eviction.getBatchSize()) {
+            // 分批删除，避免长时间锁表
+        }
+        log.info("过期购物车清理完成，删除{}条，耗时{}ms", purged, System.currentTimeMillis() - begin);
+    }
+
+    private boolean pause(Duration pause) {
+        if (pause.isZero()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pauseTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.hmall.cart.utils;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.crypto.digest.HmacAlgorithm;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.hmall.cart.config.CartProperties;
+import com.hmall.cart.domain.vo.GuestTokenVO;
+import com.hmall.common.exception.BadRequestException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 游客令牌的签发和校验工具。
+ * <p>
+ * 游客id 为负数，和注册用户的自增id 不会重叠；令牌为 游客id.过期时间.签名，签名使用 HmacSHA256，
+ * 只有持有令牌的人才能证明自己是这个游客，合并购物车时不再直接信任前端传来的游客id
+ */
+@Component
+public class GuestTokenSigner {
+
+    private final byte[] key;
+    private final CartProperties cartProperties;
+
+    public GuestTokenSigner(CartProperties cartProperties) {
+        String secret = cartProperties.getGuest().getSecret();
+        if (StrUtil.isBlank(secret)) {
+            throw new IllegalStateException("未配置游客令牌的签名密钥 hm.cart.guest.secret");
+        }
+        this.key = secret.getBytes(StandardCharsets.UTF_8);
+        this.cartProperties = cartProperties;
+    }
+
+    /**
+     * 创建一个新的游客身份并签发令牌
+     */
+    public GuestTokenVO issue() {
+        long guestId = -IdWorker.getId();
+        long expireTime = System.currentTimeMillis() + cartProperties.getGuest().getTokenTtl().toMillis();
+        String payload = guestId + "." + expireTime;
+        return new GuestTokenVO()
+                .setGuestId(guestId)
+                .setExpireTime(expireTime)
+                .setToken(payload + "." + digest(payload));
+    }
+
+    /**
+     * 校验令牌未被篡改且未过期
+     * @return 令牌中的游客id
+     */
+    public Long verify(String token) {
+        if (StrUtil.isBlank(token)) {
+            throw new BadRequestException("游客令牌不能为空");
+        }
+        int index = token.lastIndexOf('.');
+        if (index <= 0) {
+            throw new BadRequestException("游客令牌无效");
+        }
+        String payload = token.substring(0, index);
+        byte[] expected = digest(payload).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, token.substring(index + 1).getBytes(StandardCharsets.UTF_8))) {
+            throw new BadRequestException("游客令牌无效");
+        }
+        String[] parts = payload.split("\\.");
+        long guestId;
+        long expireTime;
+        try {
+            guestId = Long.parseLong(parts[0]);
+            expireTime = Long.parseLong(parts[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new BadRequestException("游客令牌无效");
+        }
+        if (expireTime < System.currentTimeMillis()) {
+            throw new BadRequestException("游客令牌已过期");
+        }
+        // 注册用户的id 都是正数，签名正确但不是游客id 的令牌同样拒绝
+        if (guestId >= 0) {
+            throw new BadRequestException("游客令牌无效");
+        }
+        return guestId;
+    }
+
+    private String digest(String payload) {
+        // HMac 对象不是线程安全的，每次计算创建一个
+        return SecureUtil.hmac(HmacAlgorithm.HmacSHA256, key).digestHex(payload);
+    }
+}
@@ -0,0 +1,7 @@
+-- 已清理购物车的订单，与清理购物车在同一个本地事务中写入，同一个订单的重复清理请求直接跳过
+CREATE TABLE IF NOT EXISTS `cart_order_log` (
+    `order_id`    BIGINT   NOT NULL COMMENT '订单id',
+    `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`order_id`),
+    KEY `idx_create_time` (`create_time`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '购物车清理记录';
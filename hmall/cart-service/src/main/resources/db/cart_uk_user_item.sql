@@ -0,0 +1,21 @@
+-- 购物车按 (user_id, item_id) 唯一，加购（upsertNum）和合并购物车（mergeCart）的 INSERT ... ON DUPLICATE KEY UPDATE 依赖这个唯一索引。
+-- 没有唯一索引时已经写入的重复条目需要先合并，合并期间仍有加购会产生新的重复，执行失败时重新执行即可
+
+-- 1. 把重复条目的数量累加到 id 最小的条目上
+UPDATE `cart` c
+    JOIN (SELECT MIN(id) AS keep_id, SUM(num) AS total_num, MAX(update_time) AS last_time
+          FROM `cart`
+          GROUP BY user_id, item_id
+          HAVING COUNT(*) > 1) d ON c.id = d.keep_id
+SET c.num = d.total_num, c.update_time = d.last_time;
+
+-- 2. 删除其余的重复条目
+DELETE c
+FROM `cart` c
+    JOIN (SELECT user_id, item_id, MIN(id) AS keep_id
+          FROM `cart`
+          GROUP BY user_id, item_id
+          HAVING COUNT(*) > 1) d ON c.user_id = d.user_id AND c.item_id = d.item_id AND c.id <> d.keep_id;
+
+-- 3. 添加唯一索引
+ALTER TABLE `cart` ADD UNIQUE KEY `uk_user_item` (`user_id`, `item_id`);
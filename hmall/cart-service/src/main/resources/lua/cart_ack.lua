@@ -0,0 +1,12 @@
+-- 回写完成，回写期间没有再被修改的用户移出待回写集合，被修改过的释放租约，等待下次回写
+-- KEYS[1]: 一个分区的待回写用户 zset，KEYS[i + 1]: 这个分区第 i 个用户的购物车 hash
+-- ARGV[2i - 1]: 第 i 个用户的id，ARGV[2i]: 回写时读到的版本号，购物车已过期时为 0
+for i = 1, #KEYS - 1 do
+    local version = tonumber(redis.call('hget', KEYS[i + 1], 'version') or '0')
+    if version == tonumber(ARGV[2 * i]) then
+        redis.call('zrem', KEYS[1], ARGV[2 * i - 1])
+    else
+        redis.call('zadd', KEYS[1], 0, ARGV[2 * i - 1])
+    end
+end
+return #KEYS - 1
@@ -0,0 +1,18 @@
+-- 领取一批待回写的用户，分数改为租约到期时间，租约内其它实例不会重复回写，实例崩溃后租约到期可以被重新领取
+-- KEYS[1]: 一个分区的待回写用户 zset
+-- ARGV[1]: 当前时间（毫秒），ARGV[2]: 租约到期时间（毫秒），ARGV[3]: 最多领取的数量，ARGV[4]: 可选，只领取这个用户
+-- 返回领取到的用户id
+local ids
+if ARGV[4] then
+    local score = redis.call('zscore', KEYS[1], ARGV[4])
+    if not score or tonumber(score) > tonumber(ARGV[1]) then
+        return {}
+    end
+    ids = { ARGV[4] }
+else
+    ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[3])
+end
+for _, id in ipairs(ids) do
+    redis.call('zadd', KEYS[1], ARGV[2], id)
+end
+return ids
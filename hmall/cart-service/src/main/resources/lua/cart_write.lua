@@ -0,0 +1,24 @@
+-- 按版本号条件修改用户的购物车 hash，只写入有变化的条目。
+-- 版本号不一致说明读取后被其它请求或其它实例修改过，由调用方重新读取后重试
+-- KEYS[1]: 购物车 hash，KEYS[2]: 用户所在分区的待回写用户 zset
+-- ARGV[1]: 读取时的版本号，ARGV[2]: 有效期（秒），ARGV[3]: 用户id，ARGV[4]: 1 表示需要回写 MySQL，
+-- ARGV[5]: 要删除的条目数量 n，ARGV[6 .. 5+n]: 要删除的商品id，之后依次为要写入的商品id和条目 JSON
+-- 返回 1 表示修改成功，0 表示版本号不一致
+local version = tonumber(redis.call('hget', KEYS[1], 'version') or '0')
+if version ~= tonumber(ARGV[1]) then
+    return 0
+end
+local n = tonumber(ARGV[5])
+for i = 6, 5 + n do
+    redis.call('hdel', KEYS[1], ARGV[i])
+end
+for i = 6 + n, #ARGV, 2 do
+    redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('hincrby', KEYS[1], 'version', 1)
+redis.call('expire', KEYS[1], ARGV[2])
+if ARGV[4] == '1' then
+    -- 已在集合中的用户保留原来的分数，正在回写的用户由回写完成时比较版本号处理
+    redis.call('zadd', KEYS[2], 'NX', 0, ARGV[3])
+end
+return 1
@@ -0,0 +1,117 @@
+package com.hmall.cart.loadbalancer;
+
+import com.hmall.cart.config.CartProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.*;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+import org.springframework.cloud.loadbalancer.support.SimpleObjectProvider;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyAwareLoadBalancerTest {
+
+    private static final String SERVICE_ID = "item-service";
+
+    private final ServiceInstance a = instance("a", 8081);
+    private final ServiceInstance b = instance("b", 8082);
+    private final ServiceInstance c = instance("c", 8083);
+
+    private LatencyAwareLoadBalancer loadBalancer;
+
+    @BeforeEach
+    void setUp() {
+        loadBalancer = new LatencyAwareLoadBalancer(
+                new SimpleObjectProvider<>(ServiceInstanceListSuppliers.from(SERVICE_ID, a, b, c)),
+                SERVICE_ID,
+                new CartProperties.LoadBalancer()
+        );
+    }
+
+    @Test
+    void slowInstanceIsAvoided() {
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.record(a, Duration.ofMillis(10).toNanos(), true);
+            loadBalancer.record(b, Duration.ofMillis(12).toNanos(), true);
+            loadBalancer.record(c, Duration.ofMillis(500).toNanos(), true);
+        }
+        Map<String, Integer> counts = chooseMany(1000);
+        // 每次比较两个不同的实例，最慢的实例永远不会被选中
+        assertNull(counts.get("c"));
+        assertTrue(counts.get("a") > 0);
+        assertTrue(counts.get("b") > 0);
+    }
+
+    @Test
+    void failingInstanceIsEjected() {
+        for (int i = 0; i < 3; i++) {
+            loadBalancer.record(c, Duration.ofSeconds(5).toNanos(), false);
+        }
+        // 让 c 的响应时间看起来最快，仍然不会被选中
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.record(a, Duration.ofMillis(100).toNanos(), true);
+            loadBalancer.record(b, Duration.ofMillis(100).toNanos(), true);
+            loadBalancer.record(c, Duration.ofMillis(1).toNanos(), true);
+        }
+        assertNull(chooseMany(1000).get("c"));
+    }
+
+    @Test
+    void allEjectedStillChoosesInstance() {
+        for (ServiceInstance instance : new ServiceInstance[]{a, b, c}) {
+            for (int i = 0; i < 3; i++) {
+                loadBalancer.record(instance, Duration.ofSeconds(5).toNanos(), false);
+            }
+        }
+        Response<ServiceInstance> response = loadBalancer.choose(new DefaultRequest<>()).block();
+        assertNotNull(response);
+        assertTrue(response.hasServer());
+    }
+
+    @Test
+    void busyInstanceIsAvoided() {
+        // a 有很多处理中的请求，b、c 空闲，响应时间相同
+        Request<Object> request = new DefaultRequest<>(new RequestDataContext());
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.onStartRequest(request, new DefaultResponse(a));
+        }
+        assertNull(chooseMany(1000).get("a"));
+
+        // 请求结束后 a 重新参与选择
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, request, new DefaultResponse(a)));
+        }
+        assertNotNull(chooseMany(1000).get("a"));
+    }
+
+    @Test
+    void noInstance() {
+        LatencyAwareLoadBalancer empty = new LatencyAwareLoadBalancer(
+                new SimpleObjectProvider<>(ServiceInstanceListSuppliers.from(SERVICE_ID)),
+                SERVICE_ID,
+                new CartProperties.LoadBalancer()
+        );
+        Response<ServiceInstance> response = empty.choose(new DefaultRequest<>()).block();
+        assertNotNull(response);
+        assertFalse(response.hasServer());
+    }
+
+    private Map<String, Integer> chooseMany(int times) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < times; i++) {
+            Response<ServiceInstance> response = loadBalancer.choose(new DefaultRequest<>()).block();
+            counts.merge(response.getServer().getInstanceId(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static ServiceInstance instance(String id, int port) {
+        return new DefaultServiceInstance(id, SERVICE_ID, "127.0.0.1", port, false);
+    }
+}
@@ -2,13 +2,19 @@ package com.hmall.api.client;
 
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.Collection;
-import java.util.List;
 
 @FeignClient("cart-service")
 public interface CartClient {
     @DeleteMapping("/carts")
     void deleteCartItemByIds(@RequestParam("ids") Collection<Long> ids);
+
+    /**
+     * 下单后清理当前用户购物车中已下单的商品，同一个订单只清理一次
+     */
+    @DeleteMapping("/carts/orders/{orderId}")
+    void clearOrderedItems(@PathVariable("orderId") Long orderId, @RequestParam("itemIds") Collection<Long> itemIds);
 }
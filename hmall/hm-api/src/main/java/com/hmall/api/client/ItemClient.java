@@ -4,7 +4,11 @@ package com.hmall.api.client;
 import com.hmall.api.client.fallback.ItemClientFallback;
 import com.hmall.api.config.DefaultFeignConfig;
 import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.OrderStockRestoreDTO;
+import com.hmall.api.domain.dto.StockDeductResultDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,6 +20,38 @@ public interface ItemClient {
     @GetMapping("/items")
     List<ItemDTO> queryItemByIds(@RequestParam("ids") Collection<Long> ids);
 
+    /**
+     * 批量查询商品，freshStock 为 true 时库存不走缓存，直接读数据库
+     */
+    @GetMapping("/items")
+    List<ItemDTO> queryItemByIds(@RequestParam("ids") Collection<Long> ids, @RequestParam("freshStock") Boolean freshStock);
+
+    /**
+     * 批量查询商品的价格、状态和库存，库存为实时值
+     */
+    @GetMapping("/items/price-stock")
+    List<ItemPriceStockDTO> queryItemPriceStock(@RequestParam("ids") Collection<Long> ids);
+
+    /**
+     * 批量查询商品快照：名称、规格、价格和图片
+     */
+    @GetMapping("/items/snapshots")
+    List<ItemSnapshotDTO> queryItemSnapshots(@RequestParam("ids") Collection<Long> ids);
+
     @PutMapping("/items/stock/deduct")
     void deductStock(@RequestBody List<OrderDetailDTO> items);
+
+    /**
+     * 按订单批量扣减库存，任意商品库存不足时不扣减任何商品，返回每个商品的扣减结果。
+     * 同一个订单重复调用只扣减一次；订单已经归还过库存时不再扣减，调用超时等结果未知时可以直接归还
+     */
+    @PutMapping("/items/stock/deduct/checked")
+    List<StockDeductResultDTO> deductStockChecked(@RequestParam("orderId") Long orderId, @RequestBody List<OrderDetailDTO> items);
+
+    /**
+     * 批量恢复库存，用于取消订单或下单失败时归还已扣减的库存，按订单id 幂等，重复调用不会重复归还，
+     * 没有扣减过的订单不会归还
+     */
+    @PutMapping("/items/stock/restore")
+    void restoreStock(@RequestBody List<OrderStockRestoreDTO> restores);
 }
@@ -5,12 +5,22 @@ import com.hmall.api.domain.dto.PayOrderDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.Collection;
+import java.util.List;
 
 @FeignClient(value = "pay-service", fallbackFactory = PayClientFallback.class)
 public interface PayClient {
     @GetMapping("/pay-orders/biz/{id}")
     PayOrderDTO queryPayOrderByBizOrderNo(@PathVariable("id") Long id);
 
+    /**
+     * 根据业务订单id批量查询支付单，没有支付单的订单不在结果中。
+     * 一批可能有几百个订单id，放在请求体中，避免超过请求行的长度限制
+     */
+    @PostMapping("/pay-orders/biz/query")
+    List<PayOrderDTO> queryPayOrdersByBizOrderNos(@RequestBody Collection<Long> ids);
 
 }
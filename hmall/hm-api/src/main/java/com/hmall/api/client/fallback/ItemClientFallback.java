@@ -2,7 +2,11 @@ package com.hmall.api.client.fallback;
 
 import com.hmall.api.client.ItemClient;
 import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.OrderStockRestoreDTO;
+import com.hmall.api.domain.dto.StockDeductResultDTO;
 import com.hmall.common.exception.BizIllegalException;
 import com.hmall.common.utils.CollUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -24,11 +28,42 @@ public class ItemClientFallback implements FallbackFactory<ItemClient> {
                 return CollUtils.emptyList();
             }
 
+            @Override
+            public List<ItemDTO> queryItemByIds(Collection<Long> ids, Boolean freshStock) {
+                log.error("远程调用ItemClient#queryItemByIds方法出现异常，参数：{}, {}", ids, freshStock, cause);
+                return CollUtils.emptyList();
+            }
+
+            @Override
+            public List<ItemPriceStockDTO> queryItemPriceStock(Collection<Long> ids) {
+                log.error("远程调用ItemClient#queryItemPriceStock方法出现异常，参数：{}", ids, cause);
+                // 查询购物车允许失败，查询失败，返回空集合
+                return CollUtils.emptyList();
+            }
+
+            @Override
+            public List<ItemSnapshotDTO> queryItemSnapshots(Collection<Long> ids) {
+                log.error("远程调用ItemClient#queryItemSnapshots方法出现异常，参数：{}", ids, cause);
+                return CollUtils.emptyList();
+            }
+
             @Override
             public void deductStock(List<OrderDetailDTO> items) {
                 // 库存扣减业务需要触发事务回滚，查询失败，抛出异常
                 throw new BizIllegalException(cause);
             }
+
+            @Override
+            public List<StockDeductResultDTO> deductStockChecked(Long orderId, List<OrderDetailDTO> items) {
+                // 无法确认扣减结果，抛出异常由调用方按订单id 归还
+                throw new BizIllegalException(cause);
+            }
+
+            @Override
+            public void restoreStock(List<OrderStockRestoreDTO> restores) {
+                // 库存必须恢复，抛出异常由调用方重试
+                throw new BizIllegalException(cause);
+            }
         };
     }
 }
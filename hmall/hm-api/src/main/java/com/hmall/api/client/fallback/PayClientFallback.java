@@ -2,8 +2,12 @@ package com.hmall.api.client.fallback;
 
 import com.hmall.api.client.PayClient;
 import com.hmall.api.domain.dto.PayOrderDTO;
+import com.hmall.common.exception.BizIllegalException;
 import org.springframework.cloud.openfeign.FallbackFactory;
 
+import java.util.Collection;
+import java.util.List;
+
 public class PayClientFallback implements FallbackFactory<PayClient> {
 
     @Override
@@ -13,6 +17,12 @@ public class PayClientFallback implements FallbackFactory<PayClient> {
             public PayOrderDTO queryPayOrderByBizOrderNo(Long id) {
                 return null;
             }
+
+            @Override
+            public List<PayOrderDTO> queryPayOrdersByBizOrderNos(Collection<Long> ids) {
+                // 查询失败时不能当作未支付，抛出异常由调用方重试
+                throw new BizIllegalException(cause);
+            }
         };
     }
 }
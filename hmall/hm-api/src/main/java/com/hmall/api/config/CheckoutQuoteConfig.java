@@ -0,0 +1,21 @@
+package com.hmall.api.config;
+
+import com.hmall.api.utils.CheckoutQuoteSigner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 配置了 hm.checkout.secret 的服务才需要签发或校验结算报价单，配置了这个属性但值为空时启动失败
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "hm.checkout", name = "secret")
+@EnableConfigurationProperties(CheckoutQuoteProperties.class)
+public class CheckoutQuoteConfig {
+
+    @Bean
+    public CheckoutQuoteSigner checkoutQuoteSigner(CheckoutQuoteProperties properties) {
+        return new CheckoutQuoteSigner(properties);
+    }
+}
@@ -0,0 +1,19 @@
+package com.hmall.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "hm.checkout")
+public class CheckoutQuoteProperties {
+    /**
+     * 报价单的签名密钥，购物车服务和交易服务必须一致，通过环境变量或 Nacos 配置，不要提交到代码仓库
+     */
+    private String secret;
+    /**
+     * 报价单的有效期，过期后需要重新校验
+     */
+    private Duration quoteTtl = Duration.ofMinutes(2);
+}
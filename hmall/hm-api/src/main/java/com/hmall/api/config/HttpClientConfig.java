@@ -0,0 +1,76 @@
+package com.hmall.api.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有服务共享的 HTTP 连接池，Feign 和 RestTemplate 都使用这里的 HttpClient，复用 TCP 连接。
+ * 需要在 Feign 的自动配置之前加载，Feign 发现已有 CloseableHttpClient 时就不会再创建自己的连接池
+ */
+@Configuration
+@ConditionalOnClass(CloseableHttpClient.class)
+@AutoConfigureBefore(FeignAutoConfiguration.class)
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientConfig {
+
+    @Bean
+    public PoolingHttpClientConnectionManager httpClientConnectionManager(HttpClientProperties properties) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxTotal())
+                .setMaxConnPerRoute(properties.getMaxPerRoute())
+                // 优先复用最近使用过的连接，多余的连接空闲后会被回收
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                        .setTimeToLive(TimeValue.of(properties.getTimeToLive()))
+                        .setValidateAfterInactivity(TimeValue.of(properties.getValidateAfterInactivity()))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager, HttpClientProperties properties) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(Timeout.of(properties.getResponseTimeout()))
+                        .setDefaultKeepAlive(properties.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS)
+                        .build())
+                // 后台线程定期清理过期和空闲的连接
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getIdleTimeout()))
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    /**
+     * 连接池指标：已租用、等待中、空闲的连接数，引入 actuator 的服务会自动注册到 MeterRegistry
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class HttpClientMetricsConfig {
+        @Bean
+        public MeterBinder httpClientConnectionPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+            return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "hm-http-client");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.hmall.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "hm.http-client")
+public class HttpClientProperties {
+    /**
+     * 连接池的最大连接数
+     */
+    private Integer maxTotal = 200;
+    /**
+     * 每个目标地址（服务实例）的最大连接数
+     */
+    private Integer maxPerRoute = 50;
+    /**
+     * 建立连接的超时时间
+     */
+    private Duration connectTimeout = Duration.ofSeconds(1);
+    /**
+     * 等待响应的超时时间，Feign 调用以 Feign 自己的超时配置为准
+     */
+    private Duration responseTimeout = Duration.ofSeconds(5);
+    /**
+     * 服务端没有返回 Keep-Alive 时，连接默认保持的时间
+     */
+    private Duration keepAlive = Duration.ofSeconds(30);
+    /**
+     * 空闲超过这个时间的连接会被关闭，要小于服务端的 keep-alive 超时，避免使用已被服务端关闭的连接
+     */
+    private Duration idleTimeout = Duration.ofSeconds(20);
+    /**
+     * 连接的最长存活时间，到期后不再复用，使负载均衡能逐渐感知到新实例
+     */
+    private Duration timeToLive = Duration.ofMinutes(5);
+    /**
+     * 连接空闲超过这个时间后，复用前先检查连接是否可用
+     */
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+}
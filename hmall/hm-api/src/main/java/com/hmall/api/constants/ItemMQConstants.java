@@ -0,0 +1,13 @@
+package com.hmall.api.constants;
+
+public interface ItemMQConstants {
+    String ITEM_EXCHANGE_NAME = "item.topic";
+    /**
+     * 商品数据变更，消息体为变更的商品id集合
+     */
+    String ITEM_CHANGED_KEY = "item.changed";
+    /**
+     * 商品价格、状态、库存变更，消息体为 ItemPriceStockDTO 集合，已删除的商品状态为 3
+     */
+    String ITEM_PRICE_CHANGED_KEY = "item.price.changed";
+}
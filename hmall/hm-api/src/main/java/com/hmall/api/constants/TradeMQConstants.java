@@ -0,0 +1,9 @@
+package com.hmall.api.constants;
+
+public interface TradeMQConstants {
+    String TRADE_EXCHANGE_NAME = "trade.topic";
+    /**
+     * 订单已创建，消息体为 OrderCreatedDTO，下游据此清理购物车等
+     */
+    String ORDER_CREATED_KEY = "order.created";
+}
@@ -0,0 +1,21 @@
+package com.hmall.api.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "结算报价单，由购物车服务校验后签名，下单时原样提交")
+public class CheckoutQuoteDTO {
+    @Schema(description = "用户id")
+    private Long userId;
+    @Schema(description = "商品条目")
+    private List<CheckoutQuoteItemDTO> items;
+    @Schema(description = "总价（分）")
+    private Integer totalFee;
+    @Schema(description = "过期时间，毫秒时间戳")
+    private Long expireTime;
+    @Schema(description = "签名")
+    private String signature;
+}
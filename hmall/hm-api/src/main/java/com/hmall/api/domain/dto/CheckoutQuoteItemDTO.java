@@ -0,0 +1,21 @@
+package com.hmall.api.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "结算报价单中的商品条目")
+public class CheckoutQuoteItemDTO {
+    @Schema(description = "商品id")
+    private Long itemId;
+    @Schema(description = "SKU名称")
+    private String name;
+    @Schema(description = "规格")
+    private String spec;
+    @Schema(description = "商品图片")
+    private String image;
+    @Schema(description = "校验时的价格（分）")
+    private Integer price;
+    @Schema(description = "购买数量")
+    private Integer num;
+}
@@ -0,0 +1,21 @@
+package com.hmall.api.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "商品价格和库存")
+public class ItemPriceStockDTO {
+    @Schema(description = "商品id")
+    private Long id;
+    @Schema(description = "价格（分）")
+    private Integer price;
+    @Schema(description = "商品状态 1-正常，2-下架，3-删除")
+    private Integer status;
+    @Schema(description = "库存数量")
+    private Integer stock;
+}
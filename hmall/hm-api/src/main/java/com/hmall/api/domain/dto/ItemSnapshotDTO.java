@@ -0,0 +1,23 @@
+package com.hmall.api.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "商品快照，下单时写入订单明细")
+public class ItemSnapshotDTO {
+    @Schema(description = "商品id")
+    private Long id;
+    @Schema(description = "SKU名称")
+    private String name;
+    @Schema(description = "规格")
+    private String spec;
+    @Schema(description = "价格（分）")
+    private Integer price;
+    @Schema(description = "商品图片")
+    private String image;
+}
@@ -0,0 +1,25 @@
+package com.hmall.api.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCreatedDTO {
+    /**
+     * 订单id
+     */
+    private Long orderId;
+    /**
+     * 下单用户id
+     */
+    private Long userId;
+    /**
+     * 订单中的商品id
+     */
+    private List<Long> itemIds;
+}
@@ -0,0 +1,17 @@
+package com.hmall.api.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+@Schema(description = "一个订单需要归还的库存")
+public class OrderStockRestoreDTO {
+    @Schema(description = "订单id，同一个订单的库存只会归还一次")
+    private Long orderId;
+    @Schema(description = "订单的商品和数量")
+    private List<OrderDetailDTO> details;
+}
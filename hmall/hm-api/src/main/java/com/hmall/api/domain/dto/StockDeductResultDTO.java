@@ -0,0 +1,21 @@
+package com.hmall.api.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Schema(description = "库存扣减结果")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockDeductResultDTO {
+    @Schema(description = "商品id")
+    private Long itemId;
+    @Schema(description = "扣减数量，同一商品的多条明细已合并")
+    private Integer num;
+    @Schema(description = "该商品库存是否充足，任意商品不足时所有商品都不会扣减")
+    private Boolean success;
+    @Schema(description = "扣减失败时商品的当前库存，商品不存在时为null")
+    private Integer stock;
+}
@@ -0,0 +1,77 @@
+package com.hmall.api.utils;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.HMac;
+import cn.hutool.crypto.digest.HmacAlgorithm;
+import com.hmall.api.config.CheckoutQuoteProperties;
+import com.hmall.api.domain.dto.CheckoutQuoteDTO;
+import com.hmall.api.domain.dto.CheckoutQuoteItemDTO;
+import com.hmall.common.exception.BadRequestException;
+import com.hmall.common.utils.CollUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+
+/**
+ * 结算报价单的签名工具，使用 HmacSHA256 对报价单的全部内容签名，防止前端篡改价格和数量
+ */
+public class CheckoutQuoteSigner {
+
+    private final byte[] key;
+    private final Duration quoteTtl;
+
+    public CheckoutQuoteSigner(CheckoutQuoteProperties properties) {
+        if (StrUtil.isBlank(properties.getSecret())) {
+            throw new IllegalStateException("未配置结算报价单的签名密钥 hm.checkout.secret");
+        }
+        this.key = properties.getSecret().getBytes(StandardCharsets.UTF_8);
+        this.quoteTtl = properties.getQuoteTtl();
+    }
+
+    /**
+     * 设置过期时间并签名
+     */
+    public void sign(CheckoutQuoteDTO quote) {
+        quote.setExpireTime(System.currentTimeMillis() + quoteTtl.toMillis());
+        quote.setSignature(digest(quote));
+    }
+
+    /**
+     * 校验报价单属于当前用户、未过期且未被篡改
+     */
+    public void verify(CheckoutQuoteDTO quote, Long userId) {
+        if (quote.getUserId() == null || !quote.getUserId().equals(userId)) {
+            throw new BadRequestException("报价单不属于当前用户");
+        }
+        if (quote.getExpireTime() == null || quote.getExpireTime() < System.currentTimeMillis()) {
+            throw new BadRequestException("报价单已过期，请重新结算");
+        }
+        if (CollUtils.isEmpty(quote.getItems()) || quote.getSignature() == null) {
+            throw new BadRequestException("报价单无效");
+        }
+        byte[] expected = digest(quote).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, quote.getSignature().getBytes(StandardCharsets.UTF_8))) {
+            throw new BadRequestException("报价单无效");
+        }
+    }
+
+    private String digest(CheckoutQuoteDTO quote) {
+        // 按固定顺序拼接所有字段，字段之间用不可见字符分隔，避免拼接歧义
+        StringBuilder sb = new StringBuilder()
+                .append(quote.getUserId()).append('\u001f')
+                .append(quote.getTotalFee()).append('\u001f')
+                .append(quote.getExpireTime());
+        for (CheckoutQuoteItemDTO item : quote.getItems()) {
+            sb.append('\u001e')
+                    .append(item.getItemId()).append('\u001f')
+                    .append(item.getNum()).append('\u001f')
+                    .append(item.getPrice()).append('\u001f')
+                    .append(item.getName()).append('\u001f')
+                    .append(item.getSpec()).append('\u001f')
+                    .append(item.getImage());
+        }
+        // HMac 对象内部持有 Mac 的状态，不是线程安全的，每次签名创建一个
+        return new HMac(HmacAlgorithm.HmacSHA256, key).digestHex(sb.toString());
+    }
+}
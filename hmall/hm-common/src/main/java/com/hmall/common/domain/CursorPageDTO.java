@@ -0,0 +1,28 @@
+package com.hmall.common.domain;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 支持游标翻页的分页结果，在 PageDTO 的基础上返回下一页的游标。
+ * 不统计总数时 total、pages 为 null
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class CursorPageDTO<T> extends PageDTO<T> {
+    protected String nextCursor;
+
+    public CursorPageDTO(Long total, Long pages, List<T> list, String nextCursor) {
+        super(total, pages, list);
+        this.nextCursor = nextCursor;
+    }
+
+    public static <T> CursorPageDTO<T> of(Long total, int pageSize, List<T> list, String nextCursor) {
+        Long pages = total == null ? null : (total + pageSize - 1) / pageSize;
+        return new CursorPageDTO<>(total, pages, list, nextCursor);
+    }
+}
@@ -9,4 +9,8 @@ import java.util.List;
 public class AuthProperties {
     private List<String> includePaths;
     private List<String> excludePaths;
+    /**
+     * 未登录时携带游客令牌可以访问的路径，令牌由下游服务校验
+     */
+    private List<String> guestPaths;
 }
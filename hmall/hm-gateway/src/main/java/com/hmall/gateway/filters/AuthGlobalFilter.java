@@ -44,7 +44,14 @@ public class AuthGlobalFilter implements GlobalFilter, Ordered {
         if (!CollUtils.isEmpty(headers)) {
             token = headers.get(0);
         }
-        // 4. 校验并解析token
+        // 4. 未登录但携带游客令牌时交给下游服务校验，去掉伪造的用户信息
+        if (token == null && isGuest(request)) {
+            ServerHttpRequest guestRequest = request.mutate()
+                    .headers(h -> h.remove("user-info"))
+                    .build();
+            return chain.filter(exchange.mutate().request(guestRequest).build());
+        }
+        // 5. 校验并解析token
         Long userId = null;
         try {
             userId = jwtTool.parseToken(token);
@@ -55,7 +62,7 @@ public class AuthGlobalFilter implements GlobalFilter, Ordered {
             return response.setComplete();
         }
 
-        // 5. 如果有效，传递用户信息
+        // 6. 如果有效，传递用户信息
         System.out.println("userId = " + userId);
         String userInfo = userId.toString();
         /*ServerWebExchange swe = exchange.mutate()
@@ -70,10 +77,24 @@ public class AuthGlobalFilter implements GlobalFilter, Ordered {
         ServerWebExchange swe = exchange.mutate()
                 .request(mutatedRequest)
                 .build();
-        // 6. 放行
+        // 7. 放行
         return chain.filter(swe);
     }
 
+    private boolean isGuest(ServerHttpRequest request) {
+        if (CollUtils.isEmpty(request.getHeaders().get("guest-token"))
+                || CollUtils.isEmpty(authProperties.getGuestPaths())) {
+            return false;
+        }
+        String path = request.getPath().toString();
+        for (String pathPattern : authProperties.getGuestPaths()) {
+            if (antPathMatcher.match(pathPattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean isExclude(String antPath) {
         for (String pathPattern : authProperties.getExcludePaths()) {
             if(antPathMatcher.match(pathPattern, antPath)){
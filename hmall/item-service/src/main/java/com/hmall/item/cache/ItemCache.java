@@ -0,0 +1,128 @@
+package com.hmall.item.cache;
+
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.config.ItemProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 商品的两级读穿透缓存：一级为进程内的 Caffeine，二级为可选的 Redis。
+ * 一级缓存未命中的 id 会先在缓存中占位一个未完成的 future，再依次查询 Redis 和数据库，
+ * 并发请求中重叠的 id 会直接等待这个 future，共享同一次加载
+ */
+@Slf4j
+@Component
+public class ItemCache {
+
+    private static final String KEY_PREFIX = "item:";
+
+    private final AsyncCache<Long, ItemDTO> localCache;
+    private final StringRedisTemplate redisTemplate;
+    private final ItemProperties.Cache config;
+
+    public ItemCache(ItemProperties itemProperties, StringRedisTemplate redisTemplate) {
+        this.config = itemProperties.getCache();
+        this.redisTemplate = redisTemplate;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .buildAsync();
+    }
+
+    /**
+     * 批量查询商品，未命中的 id 交给 dbLoader 一次性加载，数据库中不存在的 id 不会出现在结果中
+     */
+    public List<ItemDTO> getAll(Collection<Long> ids, Function<Set<Long>, Map<Long, ItemDTO>> dbLoader) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyList();
+        }
+        // 加载逻辑在调用线程中同步执行，执行前一级缓存中已经放好了占位的 future
+        Map<Long, ItemDTO> items = localCache.getAll(ids,
+                (missIds, executor) -> CompletableFuture.completedFuture(load(new HashSet<>(missIds), dbLoader))
+        ).join();
+        return new ArrayList<>(items.values());
+    }
+
+    /**
+     * 按 ids 的顺序返回商品，不存在的商品被跳过
+     */
+    public List<ItemDTO> getAllInOrder(List<Long> ids, Function<Set<Long>, Map<Long, ItemDTO>> dbLoader) {
+        Map<Long, ItemDTO> itemMap = getAll(ids, dbLoader).stream()
+                .collect(Collectors.toMap(ItemDTO::getId, Function.identity()));
+        return ids.stream().map(itemMap::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * 清除本实例的一级缓存
+     */
+    public void invalidateLocal(Collection<Long> ids) {
+        localCache.synchronous().invalidateAll(ids);
+    }
+
+    /**
+     * 清除二级缓存和本实例的一级缓存，其它实例的一级缓存需要通过 MQ 广播清理
+     */
+    public void evict(Collection<Long> ids) {
+        if (config.getRedisEnabled()) {
+            redisTemplate.delete(ids.stream().map(id -> KEY_PREFIX + id).collect(Collectors.toList()));
+        }
+        invalidateLocal(ids);
+    }
+
+    private Map<Long, ItemDTO> load(Set<Long> ids, Function<Set<Long>, Map<Long, ItemDTO>> dbLoader) {
+        if (!config.getRedisEnabled()) {
+            return dbLoader.apply(ids);
+        }
+        Map<Long, ItemDTO> result = new HashMap<>(ids.size());
+        // 1. 查询二级缓存
+        List<Long> idList = new ArrayList<>(ids);
+        try {
+            List<String> values = redisTemplate.opsForValue()
+                    .multiGet(idList.stream().map(id -> KEY_PREFIX + id).collect(Collectors.toList()));
+            for (int i = 0; values != null && i < values.size(); i++) {
+                if (values.get(i) != null) {
+                    result.put(idList.get(i), JSONUtil.toBean(values.get(i), ItemDTO.class));
+                }
+            }
+        } catch (Exception e) {
+            // 二级缓存不可用时直接查数据库
+            log.error("查询商品二级缓存异常", e);
+        }
+        // 2. 二级缓存未命中的查询数据库
+        Set<Long> missIds = new HashSet<>(ids);
+        missIds.removeAll(result.keySet());
+        if (missIds.isEmpty()) {
+            return result;
+        }
+        Map<Long, ItemDTO> dbItems = dbLoader.apply(missIds);
+        result.putAll(dbItems);
+        // 3. 回写二级缓存
+        try {
+            Map<String, String> values = dbItems.values().stream()
+                    .collect(Collectors.toMap(item -> KEY_PREFIX + item.getId(), JSONUtil::toJsonStr));
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    values.forEach((key, value) -> operations.opsForValue().set(key, value, config.getRedisTtl()));
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("回写商品二级缓存异常", e);
+        }
+        return result;
+    }
+}
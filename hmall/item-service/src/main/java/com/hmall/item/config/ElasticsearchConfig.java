@@ -0,0 +1,17 @@
+package com.hmall.item.config;
+
+import com.hmall.item.jacksonJsonpMapper.CustomJacksonJsonpMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ElasticsearchConfig {
+    /**
+     * RestClient 和 ElasticsearchClient 由 SpringBoot 基于 spring.elasticsearch.* 自动装配，
+     * 这里只替换 JsonpMapper，保证 LocalDateTime 按字符串读写，与测试类中的写法一致
+     */
+    @Bean
+    public CustomJacksonJsonpMapper jsonpMapper() {
+        return new CustomJacksonJsonpMapper();
+    }
+}
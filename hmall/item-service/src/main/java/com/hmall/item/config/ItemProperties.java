@@ -0,0 +1,57 @@
+package com.hmall.item.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.item")
+public class ItemProperties {
+    /**
+     * 批量查询商品时模拟的业务延迟，默认不延迟，压测、演示服务保护时再打开
+     */
+    private Duration simulateLatency = Duration.ZERO;
+    /**
+     * 商品缓存配置
+     */
+    private Cache cache = new Cache();
+    /**
+     * 批量导入导出配置
+     */
+    private Bulk bulk = new Bulk();
+
+    @Data
+    public static class Cache {
+        /**
+         * 本地缓存的最大商品数量
+         */
+        private Long maximumSize = 10000L;
+        /**
+         * 本地缓存的有效期
+         */
+        private Duration expireAfterWrite = Duration.ofSeconds(30);
+        /**
+         * 是否启用 Redis 二级缓存，多个实例共享
+         */
+        private Boolean redisEnabled = false;
+        /**
+         * Redis 二级缓存的有效期
+         */
+        private Duration redisTtl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Bulk {
+        /**
+         * 导入时每批写入数据库的行数，也是内存中最多缓冲的行数
+         */
+        private Integer batchSize = 1000;
+        /**
+         * 导入结果中最多返回的错误信息条数
+         */
+        private Integer maxErrors = 100;
+    }
+}
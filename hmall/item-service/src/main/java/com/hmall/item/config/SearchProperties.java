@@ -0,0 +1,78 @@
+package com.hmall.item.config;
+
+import com.hmall.item.enums.SearchMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.search")
+public class SearchProperties {
+    /**
+     * 搜索模式，默认走 ES，DB 模式为原来的 MySQL 查询
+     */
+    private SearchMode mode = SearchMode.ES;
+    /**
+     * ES 查询异常时是否降级到 MySQL 查询
+     */
+    private Boolean fallbackToDb = true;
+    /**
+     * 索引库别名，全量重建时指向新建的索引库
+     */
+    private String index = "items";
+    /**
+     * 广告商品的算分权重
+     */
+    private Float adBoost = 10f;
+    /**
+     * 数据同步配置
+     */
+    private Sync sync = new Sync();
+    /**
+     * 过滤项聚合配置
+     */
+    private Filters filters = new Filters();
+
+    @Data
+    public static class Sync {
+        /**
+         * 启动时是否强制全量重建索引，索引库不存在时无论如何都会重建
+         */
+        private Boolean rebuildOnStartup = false;
+        /**
+         * 全量重建时写入索引库的并发线程数
+         */
+        private Integer rebuildThreads = 4;
+        /**
+         * 每次从数据库读取的商品数量
+         */
+        private Integer pageSize = 1000;
+        /**
+         * 单个 bulk 请求的最大字节数
+         */
+        private Long bulkMaxBytes = 5L * 1024 * 1024;
+        /**
+         * 增量同步的刷新间隔
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Filters {
+        /**
+         * 品牌、分类各返回的聚合桶数量
+         */
+        private Integer bucketSize = 20;
+        /**
+         * 过滤项缓存的有效期，只缓存空查询和只带关键字的查询
+         */
+        private Duration cacheTtl = Duration.ofMinutes(1);
+        /**
+         * 过滤项缓存的最大条数
+         */
+        private Long cacheSize = 1000L;
+    }
+}
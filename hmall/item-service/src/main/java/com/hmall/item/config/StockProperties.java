@@ -0,0 +1,31 @@
+package com.hmall.item.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.stock")
+public class StockProperties {
+    /**
+     * 热点商品id，这些商品的库存加载到 Redis 中预扣，扣减量异步回写数据库
+     */
+    private Set<Long> hotItems = new HashSet<>();
+    /**
+     * 扣减量回写数据库的间隔
+     */
+    private Duration flushInterval = Duration.ofMillis(500);
+    /**
+     * 回写批次记录的保留时间，只用于识别崩溃后重复回写的批次
+     */
+    private Duration flushLogRetention = Duration.ofDays(1);
+    /**
+     * 订单库存记录的保留时间，需要长于订单从下单到取消、调用方重试扣减或归还的最长时间
+     */
+    private Duration orderLogRetention = Duration.ofDays(7);
+}
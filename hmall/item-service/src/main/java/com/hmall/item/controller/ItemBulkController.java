@@ -0,0 +1,46 @@
+package com.hmall.item.controller;
+
+import com.hmall.item.domain.vo.ItemImportResultVO;
+import com.hmall.item.enums.BulkFormat;
+import com.hmall.item.service.IItemBulkService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+
+@Tag(name = "商品批量导入导出接口")
+@RestController
+@RequestMapping("/items/bulk")
+@RequiredArgsConstructor
+public class ItemBulkController {
+
+    private final IItemBulkService itemBulkService;
+
+    @Operation(summary = "批量导入商品", description = "请求体为 NDJSON 或带表头的 CSV，按商品id新增或更新")
+    @PostMapping("/import")
+    public ItemImportResultVO importItems(
+            @Parameter(description = "数据格式") @RequestParam(value = "format", defaultValue = "NDJSON") BulkFormat format,
+            HttpServletRequest request) throws IOException {
+        // 直接读取请求体的输入流，不把整个文件读入内存
+        return itemBulkService.importItems(request.getInputStream(), format);
+    }
+
+    @Operation(summary = "导出全部商品")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportItems(
+            @Parameter(description = "数据格式") @RequestParam(value = "format", defaultValue = "NDJSON") BulkFormat format) {
+        String filename = "items." + format.name().toLowerCase();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .body(out -> itemBulkService.exportItems(out, format));
+    }
+}
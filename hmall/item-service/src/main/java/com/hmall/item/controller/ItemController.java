@@ -2,19 +2,22 @@ package com.hmall.item.controller;
 
 
 import cn.hutool.core.thread.ThreadUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmall.api.domain.dto.ItemDTO;
-import com.hmall.common.domain.PageDTO;
-import com.hmall.common.domain.PageQuery;
-import com.hmall.common.utils.BeanUtils;
-import com.hmall.item.domain.po.Item;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.item.config.ItemProperties;
+import com.hmall.item.domain.query.CursorPageQuery;
 import com.hmall.item.service.IItemService;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.OrderStockRestoreDTO;
+import com.hmall.api.domain.dto.StockDeductResultDTO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.List;
 
 @Tag(name = "商品管理相关接口")
@@ -24,44 +27,57 @@ import java.util.List;
 public class ItemController {
 
     private final IItemService itemService;
+    private final ItemProperties itemProperties;
 
     @Operation(summary = "分页查询商品")
     @GetMapping("/page")
-    public PageDTO<ItemDTO> queryItemByPage(PageQuery query) {
-        // 1.分页查询
-        Page<Item> result = itemService.page(query.toMpPage("update_time", false));
-        // 2.封装并返回
-        return PageDTO.of(result, ItemDTO.class);
+    public CursorPageDTO<ItemDTO> queryItemByPage(CursorPageQuery query) {
+        // 分页查询，传了游标时按游标翻页
+        return itemService.queryItemByPage(query);
     }
 
     @Operation(description = "根据id批量查询商品")
     @GetMapping
-    public List<ItemDTO> queryItemByIds(@RequestParam("ids") List<Long> ids){
-        // 模拟业务延迟
-        ThreadUtil.sleep(500);
-        return itemService.queryItemByIds(ids);
+    public List<ItemDTO> queryItemByIds(@RequestParam("ids") List<Long> ids,
+                                        @RequestParam(value = "freshStock", defaultValue = "false") Boolean freshStock){
+        // 模拟业务延迟，默认关闭
+        Duration latency = itemProperties.getSimulateLatency();
+        if (!latency.isZero()) {
+            ThreadUtil.sleep(latency.toMillis());
+        }
+        // 下单等依赖库存的场景传 freshStock=true，库存不走缓存
+        return itemService.queryItemByIds(ids, freshStock);
+    }
+
+    @Operation(description = "根据id批量查询商品价格、状态和实时库存")
+    @GetMapping("/price-stock")
+    public List<ItemPriceStockDTO> queryItemPriceStock(@RequestParam("ids") List<Long> ids){
+        return itemService.queryItemPriceStock(ids);
+    }
+
+    @Operation(description = "根据id批量查询商品快照")
+    @GetMapping("/snapshots")
+    public List<ItemSnapshotDTO> queryItemSnapshots(@RequestParam("ids") List<Long> ids){
+        return itemService.queryItemSnapshots(ids);
     }
 
     @Operation(description = "根据id查询商品")
     @GetMapping("{id}")
     public ItemDTO queryItemById(@PathVariable("id") Long id) {
-        return BeanUtils.copyBean(itemService.getById(id), ItemDTO.class);
+        return itemService.queryItemById(id);
     }
 
     @Operation(description = "新增商品")
     @PostMapping
     public void saveItem(@RequestBody ItemDTO item) {
         // 新增
-        itemService.save(BeanUtils.copyBean(item, Item.class));
+        itemService.saveItem(item);
     }
 
     @Operation(description = "更新商品状态")
     @PutMapping("/status/{id}/{status}")
     public void updateItemStatus(@PathVariable("id") Long id, @PathVariable("status") Integer status){
-        Item item = new Item();
-        item.setId(id);
-        item.setStatus(status);
-        itemService.updateById(item);
+        itemService.updateItemStatus(id, status);
     }
 
     @Operation(description = "更新商品")
@@ -70,13 +86,13 @@ public class ItemController {
         // 不允许修改商品状态，所以强制设置为null，更新时，就会忽略该字段
         item.setStatus(null);
         // 更新
-        itemService.updateById(BeanUtils.copyBean(item, Item.class));
+        itemService.updateItem(item);
     }
 
     @Operation(description = "根据id删除商品")
     @DeleteMapping("{id}")
     public void deleteItemById(@PathVariable("id") Long id) {
-        itemService.removeById(id);
+        itemService.deleteItem(id);
     }
 
     @Operation(description = "批量扣减库存")
@@ -84,4 +100,17 @@ public class ItemController {
     public void deductStock(@RequestBody List<OrderDetailDTO> items){
         itemService.deductStock(items);
     }
+
+    @Operation(description = "按订单批量扣减库存，库存不足时不扣减任何商品，并返回每个商品的扣减结果。同一个订单只扣减一次，已归还的订单不再扣减")
+    @PutMapping("/stock/deduct/checked")
+    public List<StockDeductResultDTO> deductStockChecked(@RequestParam("orderId") Long orderId,
+                                                         @RequestBody List<OrderDetailDTO> items){
+        return itemService.deductStockChecked(orderId, items);
+    }
+
+    @Operation(description = "批量恢复库存，用于取消订单或下单失败时归还已扣减的库存，同一个订单只归还一次")
+    @PutMapping("/stock/restore")
+    public void restoreStock(@RequestBody List<OrderStockRestoreDTO> restores){
+        itemService.restoreStock(restores);
+    }
 }
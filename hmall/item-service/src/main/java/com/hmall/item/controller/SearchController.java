@@ -1,13 +1,11 @@
 package com.hmall.item.controller;
 
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmall.api.domain.dto.ItemDTO;
-import com.hmall.common.domain.PageDTO;
-import com.hmall.item.domain.po.Item;
+import com.hmall.common.domain.CursorPageDTO;
 import com.hmall.item.domain.query.ItemPageQuery;
-import com.hmall.item.service.IItemService;
+import com.hmall.item.domain.vo.ItemFiltersVO;
+import com.hmall.item.service.ISearchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -21,20 +19,17 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class SearchController {
 
-    private final IItemService itemService;
+    private final ISearchService searchService;
 
     @Operation(summary = "搜索商品")
     @GetMapping("/list")
-    public PageDTO<ItemDTO> search(ItemPageQuery query) {
-        // 分页查询
-        Page<Item> result = itemService.lambdaQuery()
-                .like(StrUtil.isNotBlank(query.getKey()), Item::getName, query.getKey())
-                .eq(StrUtil.isNotBlank(query.getBrand()), Item::getBrand, query.getBrand())
-                .eq(StrUtil.isNotBlank(query.getCategory()), Item::getCategory, query.getCategory())
-                .eq(Item::getStatus, 1)
-                .between(query.getMaxPrice() != null, Item::getPrice, query.getMinPrice(), query.getMaxPrice())
-                .page(query.toMpPage("update_time", false));
-        // 封装并返回
-        return PageDTO.of(result, ItemDTO.class);
+    public CursorPageDTO<ItemDTO> search(ItemPageQuery query) {
+        return searchService.search(query);
+    }
+
+    @Operation(summary = "查询搜索页过滤项")
+    @GetMapping("/filters")
+    public ItemFiltersVO queryFilters(ItemPageQuery query) {
+        return searchService.queryFilters(query);
     }
 }
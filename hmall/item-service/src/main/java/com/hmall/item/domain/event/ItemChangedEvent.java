@@ -0,0 +1,18 @@
+package com.hmall.item.domain.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Collection;
+
+/**
+ * 商品数据变更事件，在商品新增、修改、上下架、删除、扣减库存后发布
+ */
+@Data
+@AllArgsConstructor
+public class ItemChangedEvent {
+    /**
+     * 发生变更的商品id
+     */
+    private Collection<Long> ids;
+}
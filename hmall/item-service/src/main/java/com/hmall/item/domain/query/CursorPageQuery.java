@@ -0,0 +1,25 @@
+package com.hmall.item.domain.query;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmall.common.domain.PageQuery;
+import com.hmall.item.enums.CountMode;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@EqualsAndHashCode(callSuper = true)
+@Data
+@Schema(description = "支持游标翻页的分页查询条件")
+public class CursorPageQuery extends PageQuery {
+    @Schema(description = "上一页返回的 nextCursor，传了游标则忽略页码，按游标向后翻页")
+    private String cursor;
+    @Schema(description = "总数统计方式：EXACT 精确统计，APPROX 估算，NONE 不统计")
+    private CountMode countMode = CountMode.EXACT;
+
+    /**
+     * 游标翻页只支持默认的 update_time 倒序
+     */
+    public boolean sortedByDefault() {
+        return StrUtil.isBlank(getSortBy()) || ("update_time".equals(getSortBy()) && Boolean.FALSE.equals(getIsAsc()));
+    }
+}
@@ -1,6 +1,5 @@
 package com.hmall.item.domain.query;
 
-import com.hmall.common.domain.PageQuery;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -8,7 +7,7 @@ import lombok.EqualsAndHashCode;
 @EqualsAndHashCode(callSuper = true)
 @Data
 @Schema(description = "商品分页查询条件")
-public class ItemPageQuery extends PageQuery {
+public class ItemPageQuery extends CursorPageQuery {
     @Schema(description = "搜索关键字")
     private String key;
     @Schema(description = "商品分类")
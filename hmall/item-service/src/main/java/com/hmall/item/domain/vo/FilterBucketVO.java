@@ -0,0 +1,17 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "过滤项的聚合桶")
+public class FilterBucketVO {
+    @Schema(description = "过滤项的值，例如品牌名称、分类名称")
+    private String key;
+    @Schema(description = "符合条件的商品数量")
+    private Long count;
+}
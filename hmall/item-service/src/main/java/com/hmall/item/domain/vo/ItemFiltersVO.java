@@ -0,0 +1,21 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "搜索页过滤项")
+public class ItemFiltersVO {
+    @Schema(description = "品牌聚合结果")
+    private List<FilterBucketVO> brands;
+    @Schema(description = "分类聚合结果")
+    private List<FilterBucketVO> categories;
+    @Schema(description = "最低价格（分）")
+    private Integer minPrice;
+    @Schema(description = "最高价格（分）")
+    private Integer maxPrice;
+    @Schema(description = "平均价格（分）")
+    private Integer avgPrice;
+}
@@ -0,0 +1,20 @@
+package com.hmall.item.domain.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Schema(description = "商品批量导入结果")
+public class ItemImportResultVO {
+    @Schema(description = "读取的数据行数")
+    private long total;
+    @Schema(description = "导入成功的行数")
+    private long success;
+    @Schema(description = "校验失败的行数")
+    private long failed;
+    @Schema(description = "失败原因，只保留前面的若干条")
+    private List<String> errors = new ArrayList<>();
+}
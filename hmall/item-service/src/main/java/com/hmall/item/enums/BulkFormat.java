@@ -0,0 +1,17 @@
+package com.hmall.item.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum BulkFormat {
+    NDJSON("application/x-ndjson", "每行一个 JSON 格式的商品"),
+    CSV("text/csv", "首行为表头，字段名同 ItemDTO"),
+    ;
+    private final String contentType;
+    private final String desc;
+
+    BulkFormat(String contentType, String desc) {
+        this.contentType = contentType;
+        this.desc = desc;
+    }
+}
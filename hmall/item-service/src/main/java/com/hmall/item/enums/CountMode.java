@@ -0,0 +1,16 @@
+package com.hmall.item.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum CountMode {
+    EXACT("精确统计总数"),
+    APPROX("估算总数，MySQL 取表统计信息，ES 最多精确到 10000"),
+    NONE("不统计总数"),
+    ;
+    private final String desc;
+
+    CountMode(String desc) {
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,15 @@
+package com.hmall.item.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum SearchMode {
+    ES("基于 Elasticsearch 的 items 索引库搜索"),
+    DB("基于 MySQL 的 item 表模糊查询"),
+    ;
+    private final String desc;
+
+    SearchMode(String desc) {
+        this.desc = desc;
+    }
+}
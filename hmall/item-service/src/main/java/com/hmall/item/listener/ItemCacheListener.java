@@ -0,0 +1,77 @@
+package com.hmall.item.listener;
+
+import com.hmall.api.constants.ItemMQConstants;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.item.cache.ItemCache;
+import com.hmall.item.domain.event.ItemChangedEvent;
+import com.hmall.item.service.IItemService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 商品缓存失效：事务提交后清理二级缓存和本地缓存，再通过 MQ 广播给所有实例清理各自的本地缓存，
+ * 同时广播变更后的价格、状态和库存，供购物车等服务更新本地的商品快照
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemCacheListener {
+
+    private final ItemCache itemCache;
+    private final RabbitTemplate rabbitTemplate;
+    private final IItemService itemService;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        List<Long> ids = new ArrayList<>(event.getIds());
+        // 1. 清理二级缓存和本实例的本地缓存
+        itemCache.evict(ids);
+        // 2. 广播变更，消息发送失败时其它实例的本地缓存会在过期后自动失效
+        try {
+            rabbitTemplate.convertAndSend(ItemMQConstants.ITEM_EXCHANGE_NAME, ItemMQConstants.ITEM_CHANGED_KEY, ids);
+            rabbitTemplate.convertAndSend(ItemMQConstants.ITEM_EXCHANGE_NAME, ItemMQConstants.ITEM_PRICE_CHANGED_KEY,
+                    queryPriceStock(ids));
+        } catch (Exception e) {
+            log.error("发送商品变更消息失败，商品id：{}", ids, e);
+        }
+    }
+
+    /**
+     * 查询变更后的价格、状态和库存，查不到的商品已被删除
+     */
+    private List<ItemPriceStockDTO> queryPriceStock(List<Long> ids) {
+        List<ItemPriceStockDTO> items = itemService.queryItemPriceStock(ids);
+        Set<Long> existIds = items.stream().map(ItemPriceStockDTO::getId).collect(Collectors.toSet());
+        for (Long id : ids) {
+            if (!existIds.contains(id)) {
+                items.add(new ItemPriceStockDTO(id, null, 3, 0));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 每个实例绑定一个匿名队列（排他、自动删除），保证每个实例都能收到变更消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = ItemMQConstants.ITEM_EXCHANGE_NAME, type = ExchangeTypes.TOPIC),
+            key = ItemMQConstants.ITEM_CHANGED_KEY
+    ))
+    public void listenItemChanged(List<Long> ids) {
+        itemCache.invalidateLocal(ids);
+    }
+}
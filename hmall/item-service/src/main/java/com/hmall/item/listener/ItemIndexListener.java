@@ -0,0 +1,80 @@
+package com.hmall.item.listener;
+
+import com.hmall.item.config.SearchProperties;
+import com.hmall.item.domain.event.ItemChangedEvent;
+import com.hmall.item.service.IItemIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 商品索引库同步：索引库不存在时启动后全量重建，之后把商品变更事件按 id 合并，定时批量刷新到索引库
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemIndexListener implements ApplicationRunner {
+
+    private final IItemIndexService itemIndexService;
+    private final SearchProperties searchProperties;
+
+    /**
+     * 待同步的商品id，同一个商品在一个刷新周期内多次变更只会同步一次
+     */
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // 全量重建比较耗时，不阻塞服务启动
+        Thread thread = new Thread(() -> {
+            try {
+                if (!searchProperties.getSync().getRebuildOnStartup() && itemIndexService.indexExists()) {
+                    return;
+                }
+                itemIndexService.rebuildIndex();
+            } catch (Exception e) {
+                log.error("索引库全量重建失败", e);
+            }
+        }, "item-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 事务提交后再记录变更，避免把回滚的数据写入索引库
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        dirtyIds.addAll(event.getIds());
+    }
+
+    @Scheduled(fixedDelayString = "${hm.search.sync.flush-interval:1s}")
+    public void flush() {
+        if (dirtyIds.isEmpty()) {
+            return;
+        }
+        // 1. 取出本轮需要同步的 id
+        List<Long> ids = new ArrayList<>(dirtyIds);
+        ids.forEach(dirtyIds::remove);
+        // 2. 批量同步，失败的 id 放回去等下一轮重试
+        try {
+            List<Long> failedIds = itemIndexService.syncByIds(ids);
+            if (!failedIds.isEmpty()) {
+                log.warn("商品索引增量同步部分失败，{} 个商品将在下次重试", failedIds.size());
+                dirtyIds.addAll(failedIds);
+            }
+        } catch (Exception e) {
+            log.error("商品索引增量同步失败，{} 个商品将在下次重试", ids.size(), e);
+            dirtyIds.addAll(ids);
+        }
+    }
+}
@@ -3,10 +3,77 @@ package com.hmall.item.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.hmall.api.domain.dto.OrderDetailDTO;
 import com.hmall.item.domain.po.Item;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.util.Map;
 
 public interface ItemMapper extends BaseMapper<Item> {
 
     @Update("UPDATE item SET stock = stock - #{num} WHERE id = #{itemId}")
     void updateStock(OrderDetailDTO orderDetail);
+
+    /**
+     * 一条语句批量扣减多个商品的库存，deductions 的 key 为商品id，value 为扣减数量
+     */
+    @Update("<script>UPDATE item SET stock = stock - CASE id " +
+            "<foreach collection='deductions' index='id' item='num'>WHEN #{id} THEN #{num} </foreach>" +
+            "END WHERE id IN <foreach collection='deductions' index='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int batchDeductStock(@Param("deductions") Map<Long, Integer> deductions);
+
+    /**
+     * 一条语句批量扣减多个商品的库存，只要有一个商品库存不足，该商品的行就不会被更新，
+     * 调用方通过影响行数判断是否全部扣减成功
+     */
+    @Update("<script>UPDATE item SET stock = stock - CASE id " +
+            "<foreach collection='deductions' index='id' item='num'>WHEN #{id} THEN #{num} </foreach>" +
+            "END WHERE id IN <foreach collection='deductions' index='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "AND stock >= CASE id <foreach collection='deductions' index='id' item='num'>WHEN #{id} THEN #{num} </foreach>END" +
+            "</script>")
+    int conditionalDeductStock(@Param("deductions") Map<Long, Integer> deductions);
+
+    /**
+     * 一条语句批量恢复多个商品的库存，restorations 的 key 为商品id，value 为恢复数量
+     */
+    @Update("<script>UPDATE item SET stock = stock + CASE id " +
+            "<foreach collection='restorations' index='id' item='num'>WHEN #{id} THEN #{num} </foreach>" +
+            "END WHERE id IN <foreach collection='restorations' index='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int batchRestoreStock(@Param("restorations") Map<Long, Integer> restorations);
+
+    /**
+     * 按 id 新增或更新商品，销量、评论数等运营数据不会被覆盖
+     */
+    @Insert("INSERT INTO item (id, name, price, stock, image, category, brand, spec, isAD, status, create_time, update_time) " +
+            "VALUES (#{id}, #{name}, #{price}, #{stock}, #{image}, #{category}, #{brand}, #{spec}, #{isAD}, #{status}, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), price = VALUES(price), stock = VALUES(stock), image = VALUES(image), " +
+            "category = VALUES(category), brand = VALUES(brand), spec = VALUES(spec), isAD = VALUES(isAD), " +
+            "status = VALUES(status), update_time = NOW()")
+    void upsert(Item item);
+
+    /**
+     * 同 upsert，但已存在的商品不覆盖库存，用于库存以 Redis 为准的热点商品
+     */
+    @Insert("INSERT INTO item (id, name, price, stock, image, category, brand, spec, isAD, status, create_time, update_time) " +
+            "VALUES (#{id}, #{name}, #{price}, #{stock}, #{image}, #{category}, #{brand}, #{spec}, #{isAD}, #{status}, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), price = VALUES(price), image = VALUES(image), " +
+            "category = VALUES(category), brand = VALUES(brand), spec = VALUES(spec), isAD = VALUES(isAD), " +
+            "status = VALUES(status), update_time = NOW()")
+    void upsertKeepStock(Item item);
+
+    /**
+     * 流式读取全部商品，MySQL 驱动只有 fetchSize 为 Integer.MIN_VALUE 时才会逐行返回
+     */
+    @Select("SELECT * FROM item")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Item> scanAll();
+
+    @Select("SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'item'")
+    Long estimateCount();
 }
@@ -0,0 +1,22 @@
+package com.hmall.item.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+public interface StockFlushLogMapper {
+
+    /**
+     * 记录回写批次，批次已存在时影响行数为 0
+     */
+    @Insert("INSERT IGNORE INTO item_stock_flush_log (batch_id, create_time) VALUES (#{batchId}, NOW())")
+    int insertIgnore(@Param("batchId") Long batchId);
+
+    /**
+     * 删除早于指定时间的批次记录
+     */
+    @Delete("DELETE FROM item_stock_flush_log WHERE create_time < #{deadline} LIMIT #{limit}")
+    int deleteBefore(@Param("deadline") LocalDateTime deadline, @Param("limit") int limit);
+}
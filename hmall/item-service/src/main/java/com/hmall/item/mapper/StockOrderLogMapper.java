@@ -0,0 +1,39 @@
+package com.hmall.item.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+
+public interface StockOrderLogMapper {
+
+    int DEDUCTED = 1;
+    int RESTORED = 2;
+
+    /**
+     * 记录订单的库存状态，订单已存在时影响行数为 0
+     */
+    @Insert("INSERT IGNORE INTO item_stock_order_log (order_id, status, create_time) VALUES (#{orderId}, #{status}, NOW())")
+    int insertIgnore(@Param("orderId") Long orderId, @Param("status") int status);
+
+    /**
+     * 加锁读取订单的库存状态，读到其它事务已提交的最新状态
+     */
+    @Select("SELECT status FROM item_stock_order_log WHERE order_id = #{orderId} FOR UPDATE")
+    Integer selectStatusForUpdate(@Param("orderId") Long orderId);
+
+    /**
+     * 已扣减的订单改为已归还，已经归还过时影响行数为 0
+     */
+    @Update("UPDATE item_stock_order_log SET status = 2 WHERE order_id = #{orderId} AND status = 1")
+    int markRestored(@Param("orderId") Long orderId);
+
+    /**
+     * 删除早于指定时间的记录
+     */
+    @Delete("DELETE FROM item_stock_order_log WHERE create_time < #{deadline} LIMIT #{limit}")
+    int deleteBefore(@Param("deadline") LocalDateTime deadline, @Param("limit") int limit);
+}
@@ -0,0 +1,44 @@
+package com.hmall.item.service;
+
+import com.hmall.api.domain.dto.OrderDetailDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface IHotStockService {
+
+    boolean isHot(Long itemId);
+
+    /**
+     * 预扣热点商品库存，所有商品库存充足时才一起扣减，否则抛出异常
+     */
+    void reserve(List<OrderDetailDTO> items);
+
+    /**
+     * 预扣热点商品库存，所有商品库存充足时才一起扣减
+     * @return 成功返回 null，失败返回库存不足的商品id
+     */
+    Long tryReserve(List<OrderDetailDTO> items);
+
+    /**
+     * 释放预扣的热点商品库存
+     */
+    void release(List<OrderDetailDTO> items);
+
+    /**
+     * 修改热点商品的库存，新旧库存的差值随扣减量回写数据库
+     * @return 库存尚未加载到 Redis 时返回 false，由调用方直接修改数据库
+     */
+    boolean setStock(Long itemId, int stock);
+
+    /**
+     * 查询热点商品的实时库存
+     */
+    Map<Long, Integer> queryStock(Collection<Long> itemIds);
+
+    /**
+     * 把累计的扣减量合并后批量回写数据库
+     */
+    void flush();
+}
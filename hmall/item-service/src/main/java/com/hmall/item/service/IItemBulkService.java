@@ -0,0 +1,20 @@
+package com.hmall.item.service;
+
+import com.hmall.item.domain.vo.ItemImportResultVO;
+import com.hmall.item.enums.BulkFormat;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface IItemBulkService {
+
+    /**
+     * 流式导入商品，按 id 新增或更新
+     */
+    ItemImportResultVO importItems(InputStream in, BulkFormat format);
+
+    /**
+     * 流式导出全部商品
+     */
+    void exportItems(OutputStream out, BulkFormat format);
+}
@@ -0,0 +1,23 @@
+package com.hmall.item.service;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface IItemIndexService {
+
+    /**
+     * 索引库（别名）是否存在
+     */
+    boolean indexExists();
+
+    /**
+     * 全量重建索引库：导入到新的索引库后切换别名，并删除旧索引库
+     */
+    void rebuildIndex();
+
+    /**
+     * 按商品id把数据库中的最新数据同步到索引库，上架商品写入，其它状态或已删除的商品从索引库移除。
+     * 返回写入失败的商品id，由调用方稍后重试
+     */
+    List<Long> syncByIds(Collection<Long> ids);
+}
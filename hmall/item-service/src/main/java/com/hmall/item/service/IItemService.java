@@ -1,9 +1,16 @@
 package com.hmall.item.service;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.OrderStockRestoreDTO;
+import com.hmall.api.domain.dto.StockDeductResultDTO;
+import com.hmall.common.domain.CursorPageDTO;
 import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.query.CursorPageQuery;
 
 import java.util.Collection;
 import java.util.List;
@@ -12,5 +19,35 @@ public interface IItemService extends IService<Item> {
 
     void deductStock(List<OrderDetailDTO> items);
 
+    /**
+     * 按订单扣减库存，同一个订单只扣减一次，订单已被归还时不再扣减
+     */
+    List<StockDeductResultDTO> deductStockChecked(Long orderId, List<OrderDetailDTO> items);
+
+    /**
+     * 按订单归还库存，已经归还过的订单直接跳过
+     */
+    void restoreStock(List<OrderStockRestoreDTO> restores);
+
+    ItemDTO queryItemById(Long id);
+
     List<ItemDTO> queryItemByIds(Collection<Long> ids);
+
+    List<ItemDTO> queryItemByIds(Collection<Long> ids, boolean freshStock);
+
+    List<ItemPriceStockDTO> queryItemPriceStock(Collection<Long> ids);
+
+    List<ItemSnapshotDTO> queryItemSnapshots(Collection<Long> ids);
+
+    CursorPageDTO<ItemDTO> queryItemByPage(CursorPageQuery query);
+
+    CursorPageDTO<ItemDTO> queryItemByPage(CursorPageQuery query, LambdaQueryWrapper<Item> wrapper);
+
+    void saveItem(ItemDTO itemDTO);
+
+    void updateItem(ItemDTO itemDTO);
+
+    void updateItemStatus(Long id, Integer status);
+
+    void deleteItem(Long id);
 }
@@ -0,0 +1,13 @@
+package com.hmall.item.service;
+
+import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.item.domain.query.ItemPageQuery;
+import com.hmall.item.domain.vo.ItemFiltersVO;
+
+public interface ISearchService {
+
+    CursorPageDTO<ItemDTO> search(ItemPageQuery query);
+
+    ItemFiltersVO queryFilters(ItemPageQuery query);
+}
@@ -0,0 +1,234 @@
+package com.hmall.item.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.config.StockProperties;
+import com.hmall.item.domain.event.ItemChangedEvent;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.mapper.StockFlushLogMapper;
+import com.hmall.item.service.IHotStockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 热点商品库存：库存预先加载到 Redis，下单时用 Lua 脚本原子地校验并预扣，不再争抢数据库的行锁。
+ * 扣减量累计在 Redis 的 hash 中，按商品合并后定时批量回写数据库，热点商品的库存以 Redis 为准。
+ * <p>
+ * 回写时先把累计的扣减量原子地转成一个带批次号的批次，回写数据库的同时在同一个本地事务中记录批次号，
+ * 成功后再删除批次。实例在回写前后崩溃时批次仍然保留，之后由任意实例重新回写，已记录的批次直接跳过。
+ * <p>
+ * 一次下单要同时校验、扣减多个商品并累加同一个扣减量 hash，所有 key 使用同一个 hash tag，
+ * 在 Redis Cluster 中位于同一个槽，Lua 脚本才能一次访问
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HotStockServiceImpl implements IHotStockService, ApplicationRunner {
+
+    private static final String STOCK_KEY_PREFIX = "{item:stock}:";
+    private static final String PENDING_KEY = "{item:stock}:pending";
+    private static final String BATCH_KEY_PREFIX = "{item:stock}:batch:";
+    private static final String BATCHES_KEY = "{item:stock}:batches";
+
+    private static final DefaultRedisScript<Long> RESERVE_SCRIPT;
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT;
+    private static final DefaultRedisScript<Long> DRAIN_SCRIPT;
+    private static final DefaultRedisScript<Long> SET_SCRIPT;
+
+    static {
+        RESERVE_SCRIPT = new DefaultRedisScript<>();
+        RESERVE_SCRIPT.setLocation(new ClassPathResource("lua/stock_reserve.lua"));
+        RESERVE_SCRIPT.setResultType(Long.class);
+        RELEASE_SCRIPT = new DefaultRedisScript<>();
+        RELEASE_SCRIPT.setLocation(new ClassPathResource("lua/stock_release.lua"));
+        RELEASE_SCRIPT.setResultType(Long.class);
+        DRAIN_SCRIPT = new DefaultRedisScript<>();
+        DRAIN_SCRIPT.setLocation(new ClassPathResource("lua/stock_drain.lua"));
+        DRAIN_SCRIPT.setResultType(Long.class);
+        SET_SCRIPT = new DefaultRedisScript<>();
+        SET_SCRIPT.setLocation(new ClassPathResource("lua/stock_set.lua"));
+        SET_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StockProperties stockProperties;
+    private final StringRedisTemplate redisTemplate;
+    private final ItemMapper itemMapper;
+    private final StockFlushLogMapper stockFlushLogMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Set<Long> hotItems = stockProperties.getHotItems();
+        if (CollUtils.isEmpty(hotItems)) {
+            return;
+        }
+        // 预加载库存，key 已存在说明其它实例已经加载过，其中可能有尚未回写的扣减，不能覆盖
+        for (Item item : itemMapper.selectByIds(hotItems)) {
+            redisTemplate.opsForValue().setIfAbsent(STOCK_KEY_PREFIX + item.getId(), String.valueOf(item.getStock()));
+        }
+    }
+
+    @Override
+    public boolean isHot(Long itemId) {
+        return stockProperties.getHotItems().contains(itemId);
+    }
+
+    @Override
+    public void reserve(List<OrderDetailDTO> items) {
+        Long itemId = tryReserve(items);
+        if (itemId != null) {
+            throw new BizIllegalException("商品库存不足，商品id：" + itemId);
+        }
+    }
+
+    @Override
+    public Long tryReserve(List<OrderDetailDTO> items) {
+        // 1. 同一商品的多条明细先合并
+        Map<Long, Integer> nums = mergeNum(items);
+        List<Long> ids = new ArrayList<>(nums.keySet());
+        // 2. 执行脚本
+        Long r = redisTemplate.execute(RESERVE_SCRIPT, buildKeys(ids), buildArgs(ids, nums));
+        if (r == null || r == 0) {
+            return null;
+        }
+        // 3. 脚本返回失败商品的序号
+        Long itemId = ids.get((int) Math.abs(r) - 1);
+        if (r < 0) {
+            log.warn("热点商品库存尚未加载到 Redis，商品id：{}", itemId);
+        }
+        return itemId;
+    }
+
+    @Override
+    public void release(List<OrderDetailDTO> items) {
+        Map<Long, Integer> nums = mergeNum(items);
+        List<Long> ids = new ArrayList<>(nums.keySet());
+        redisTemplate.execute(RELEASE_SCRIPT, buildKeys(ids), buildArgs(ids, nums));
+    }
+
+    @Override
+    public boolean setStock(Long itemId, int stock) {
+        Long r = redisTemplate.execute(SET_SCRIPT,
+                List.of(PENDING_KEY, STOCK_KEY_PREFIX + itemId), itemId.toString(), String.valueOf(stock));
+        return r != null && r == 1;
+    }
+
+    @Override
+    public Map<Long, Integer> queryStock(Collection<Long> itemIds) {
+        List<Long> ids = new ArrayList<>(itemIds);
+        List<String> values = redisTemplate.opsForValue()
+                .multiGet(ids.stream().map(id -> STOCK_KEY_PREFIX + id).collect(Collectors.toList()));
+        Map<Long, Integer> stocks = new HashMap<>(ids.size());
+        for (int i = 0; values != null && i < values.size(); i++) {
+            if (values.get(i) != null) {
+                stocks.put(ids.get(i), Integer.valueOf(values.get(i)));
+            }
+        }
+        return stocks;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${hm.stock.flush-interval:500ms}")
+    public void flush() {
+        if (CollUtils.isEmpty(stockProperties.getHotItems())) {
+            return;
+        }
+        // 1. 把累计的扣减量原子地转成一个新批次，批次号全局唯一
+        long batchId = IdWorker.getId();
+        redisTemplate.execute(DRAIN_SCRIPT,
+                List.of(PENDING_KEY, BATCH_KEY_PREFIX + batchId, BATCHES_KEY), String.valueOf(batchId));
+        // 2. 回写所有未完成的批次，包括之前回写失败或者实例崩溃时遗留的批次
+        Set<String> batchIds = redisTemplate.opsForSet().members(BATCHES_KEY);
+        if (CollUtils.isEmpty(batchIds)) {
+            return;
+        }
+        for (String id : batchIds) {
+            writeBack(Long.valueOf(id));
+        }
+    }
+
+    /**
+     * 定时删除过期的回写批次记录
+     */
+    @Scheduled(cron = "${hm.stock.flush-log-cleanup-cron:0 30 3 * * ?}")
+    public void cleanFlushLog() {
+        LocalDateTime deadline = LocalDateTime.now().minus(stockProperties.getFlushLogRetention());
+        while (stockFlushLogMapper.deleteBefore(deadline, 1000) == 1000) {
+            // 分批删除，避免长时间锁表
+        }
+    }
+
+    private void writeBack(long batchId) {
+        String key = BATCH_KEY_PREFIX + batchId;
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        Map<Long, Integer> deductions = new HashMap<>(entries.size());
+        entries.forEach((id, num) -> {
+            int n = Integer.parseInt(num.toString());
+            if (n != 0) {
+                deductions.put(Long.valueOf(id.toString()), n);
+            }
+        });
+        // 1. 一条 UPDATE 回写所有商品，批次号与回写在同一个本地事务中记录
+        boolean applied = false;
+        if (!deductions.isEmpty()) {
+            try {
+                applied = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    if (stockFlushLogMapper.insertIgnore(batchId) == 0) {
+                        // 已经回写过，例如回写后实例崩溃，没来得及删除批次
+                        return false;
+                    }
+                    itemMapper.batchDeductStock(deductions);
+                    return true;
+                }));
+            } catch (Exception e) {
+                // 回写失败，保留批次，下次再回写
+                log.error("热点商品库存回写数据库失败，批次号：{}，扣减量：{}", batchId, deductions, e);
+                return;
+            }
+        }
+        // 2. 回写成功或者已经回写过，删除批次
+        redisTemplate.delete(key);
+        redisTemplate.opsForSet().remove(BATCHES_KEY, String.valueOf(batchId));
+        if (applied) {
+            eventPublisher.publishEvent(new ItemChangedEvent(deductions.keySet()));
+        }
+    }
+
+    private Map<Long, Integer> mergeNum(List<OrderDetailDTO> items) {
+        return items.stream().collect(Collectors.toMap(
+                OrderDetailDTO::getItemId, OrderDetailDTO::getNum, Integer::sum, LinkedHashMap::new));
+    }
+
+    private List<String> buildKeys(List<Long> ids) {
+        List<String> keys = new ArrayList<>(ids.size() + 1);
+        keys.add(PENDING_KEY);
+        ids.forEach(id -> keys.add(STOCK_KEY_PREFIX + id));
+        return keys;
+    }
+
+    private Object[] buildArgs(List<Long> ids, Map<Long, Integer> nums) {
+        Object[] args = new Object[ids.size() * 2];
+        for (int i = 0; i < ids.size(); i++) {
+            args[2 * i] = ids.get(i).toString();
+            args[2 * i + 1] = nums.get(ids.get(i)).toString();
+        }
+        return args;
+    }
+}
@@ -0,0 +1,272 @@
+package com.hmall.item.service.impl;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.text.csv.*;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.item.config.ItemProperties;
+import com.hmall.item.domain.event.ItemChangedEvent;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.vo.ItemImportResultVO;
+import com.hmall.item.enums.BulkFormat;
+import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.service.IHotStockService;
+import com.hmall.item.service.IItemBulkService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 商品批量导入导出：导入时逐行解析，每攒够一批就写入数据库，内存中最多只缓冲一批数据；
+ * 导出时通过 MyBatis 游标逐行读取，边读边写到响应流
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ItemBulkServiceImpl implements IItemBulkService {
+
+    private static final String[] CSV_HEADERS = {
+            "id", "name", "price", "stock", "image", "category", "brand", "spec", "sold", "commentCount", "isAD", "status"
+    };
+
+    private final ItemMapper itemMapper;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final IHotStockService hotStockService;
+    private final ItemProperties itemProperties;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public ItemImportResultVO importItems(InputStream in, BulkFormat format) {
+        ImportContext context = new ImportContext();
+        Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            if (format == BulkFormat.CSV) {
+                CsvReadConfig config = CsvReadConfig.defaultConfig().setContainsHeader(true).setSkipEmptyRows(true);
+                for (CsvRow row : CsvUtil.getReader(reader, config)) {
+                    context.accept(row.getOriginalLineNumber() + 1, () -> parseCsvRow(row));
+                }
+            } else {
+                BufferedReader lines = (BufferedReader) reader;
+                String line;
+                long lineNo = 0;
+                while ((line = lines.readLine()) != null) {
+                    lineNo++;
+                    if (StrUtil.isBlank(line)) {
+                        continue;
+                    }
+                    String json = line;
+                    context.accept(lineNo, () -> objectMapper.readValue(json, ItemDTO.class));
+                }
+            }
+        } catch (IOException | IORuntimeException e) {
+            throw new BizIllegalException("读取导入数据失败", e);
+        }
+        // 写入剩余的数据
+        context.flush();
+        return context.result;
+    }
+
+    @Override
+    public void exportItems(OutputStream out, BulkFormat format) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // 游标需要在同一个数据库连接中读取，用只读事务保持连接
+        TransactionTemplate readOnlyTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTemplate.setReadOnly(true);
+        readOnlyTemplate.execute(status -> {
+            try (Cursor<Item> cursor = itemMapper.scanAll()) {
+                if (format == BulkFormat.CSV) {
+                    CsvWriter csvWriter = CsvUtil.getWriter(writer);
+                    csvWriter.writeHeaderLine(CSV_HEADERS);
+                    for (Item item : cursor) {
+                        csvWriter.writeLine(toCsvRow(item));
+                    }
+                    csvWriter.flush();
+                } else {
+                    for (Item item : cursor) {
+                        writer.write(objectMapper.writeValueAsString(toDTO(item)));
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                throw new BizIllegalException("导出商品失败", e);
+            }
+            return null;
+        });
+    }
+
+    private ItemDTO parseCsvRow(CsvRow row) {
+        ItemDTO item = new ItemDTO();
+        item.setId(Convert.toLong(row.getByName("id")));
+        item.setName(row.getByName("name"));
+        item.setPrice(Convert.toInt(row.getByName("price")));
+        item.setStock(Convert.toInt(row.getByName("stock")));
+        item.setImage(row.getByName("image"));
+        item.setCategory(row.getByName("category"));
+        item.setBrand(row.getByName("brand"));
+        item.setSpec(row.getByName("spec"));
+        item.setIsAD(Convert.toBool(row.getByName("isAD")));
+        item.setStatus(Convert.toInt(row.getByName("status")));
+        return item;
+    }
+
+    private String validate(ItemDTO item) {
+        if (item.getId() == null) {
+            return "商品id不能为空";
+        }
+        if (StrUtil.isBlank(item.getName())) {
+            return "商品名称不能为空";
+        }
+        if (item.getPrice() == null || item.getPrice() < 0) {
+            return "商品价格不能为空且不能小于0";
+        }
+        if (item.getStock() == null || item.getStock() < 0) {
+            return "商品库存不能为空且不能小于0";
+        }
+        if (item.getStatus() != null && (item.getStatus() < 1 || item.getStatus() > 3)) {
+            return "商品状态只能是1、2、3";
+        }
+        return null;
+    }
+
+    private Item toItem(ItemDTO dto) {
+        return new Item()
+                .setId(dto.getId())
+                .setName(dto.getName())
+                .setPrice(dto.getPrice())
+                .setStock(dto.getStock())
+                .setImage(dto.getImage())
+                .setCategory(dto.getCategory())
+                .setBrand(dto.getBrand())
+                .setSpec(dto.getSpec())
+                .setIsAD(dto.getIsAD() != null && dto.getIsAD())
+                .setStatus(dto.getStatus() == null ? 1 : dto.getStatus());
+    }
+
+    private ItemDTO toDTO(Item item) {
+        ItemDTO dto = new ItemDTO();
+        dto.setId(item.getId());
+        dto.setName(item.getName());
+        dto.setPrice(item.getPrice());
+        dto.setStock(item.getStock());
+        dto.setImage(item.getImage());
+        dto.setCategory(item.getCategory());
+        dto.setBrand(item.getBrand());
+        dto.setSpec(item.getSpec());
+        dto.setSold(item.getSold());
+        dto.setCommentCount(item.getCommentCount());
+        dto.setIsAD(item.getIsAD());
+        dto.setStatus(item.getStatus());
+        return dto;
+    }
+
+    private String[] toCsvRow(Item item) {
+        return new String[]{
+                StrUtil.toString(item.getId()), item.getName(), StrUtil.toString(item.getPrice()),
+                StrUtil.toString(item.getStock()), item.getImage(), item.getCategory(), item.getBrand(), item.getSpec(),
+                StrUtil.toString(item.getSold()), StrUtil.toString(item.getCommentCount()),
+                StrUtil.toString(item.getIsAD()), StrUtil.toString(item.getStatus())
+        };
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        ItemDTO parse() throws Exception;
+    }
+
+    /**
+     * 一次导入的状态：当前缓冲的一批数据和累计的结果
+     */
+    private class ImportContext {
+        private final int batchSize = itemProperties.getBulk().getBatchSize();
+        private final int maxErrors = itemProperties.getBulk().getMaxErrors();
+        private final List<Item> buffer = new ArrayList<>(batchSize);
+        private final ItemImportResultVO result = new ItemImportResultVO();
+        private long firstLineNo;
+
+        void accept(long lineNo, RowParser parser) {
+            result.setTotal(result.getTotal() + 1);
+            // 1. 解析并校验
+            String error;
+            try {
+                ItemDTO dto = parser.parse();
+                error = validate(dto);
+                if (error == null) {
+                    if (buffer.isEmpty()) {
+                        firstLineNo = lineNo;
+                    }
+                    buffer.add(toItem(dto));
+                }
+            } catch (Exception e) {
+                error = "数据格式错误";
+            }
+            if (error != null) {
+                fail(1, "第" + lineNo + "行：" + error);
+                return;
+            }
+            // 2. 攒够一批写入数据库
+            if (buffer.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            // 热点商品的库存以 Redis 为准，写入数据库时不覆盖库存，之后单独修改 Redis 中的库存
+            Map<Boolean, List<Item>> parts = buffer.stream()
+                    .collect(Collectors.partitioningBy(item -> hotStockService.isHot(item.getId())));
+            MybatisBatch.Method<Item> method = new MybatisBatch.Method<>(ItemMapper.class);
+            try {
+                // 每批单独提交，JDBC 驱动开启 rewriteBatchedStatements 后会把一批 INSERT 合并为一条语句
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!parts.get(false).isEmpty()) {
+                        new MybatisBatch<>(sqlSessionFactory, parts.get(false), batchSize).execute(method.get("upsert"));
+                    }
+                    if (!parts.get(true).isEmpty()) {
+                        new MybatisBatch<>(sqlSessionFactory, parts.get(true), batchSize).execute(method.get("upsertKeepStock"));
+                    }
+                });
+                for (Item item : parts.get(true)) {
+                    if (!hotStockService.setStock(item.getId(), item.getStock())) {
+                        // 库存还没有加载到 Redis，直接修改数据库
+                        itemMapper.updateById(new Item().setId(item.getId()).setStock(item.getStock()));
+                    }
+                }
+                result.setSuccess(result.getSuccess() + buffer.size());
+                // 只重建本批商品的索引、清理本批商品的缓存
+                eventPublisher.publishEvent(new ItemChangedEvent(
+                        buffer.stream().map(Item::getId).collect(Collectors.toSet())));
+            } catch (Exception e) {
+                log.error("批量导入商品写入数据库失败，起始行号：{}", firstLineNo, e);
+                fail(buffer.size(), "第" + firstLineNo + "行开始的" + buffer.size() + "条数据写入失败");
+            }
+            buffer.clear();
+        }
+
+        private void fail(int count, String error) {
+            result.setFailed(result.getFailed() + count);
+            if (result.getErrors().size() < maxErrors) {
+                result.getErrors().add(error);
+            }
+        }
+    }
+}
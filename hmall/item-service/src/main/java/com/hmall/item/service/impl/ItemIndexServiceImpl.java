@@ -0,0 +1,295 @@
+package com.hmall.item.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.config.SearchProperties;
+import com.hmall.item.domain.dto.ItemDoc;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.jacksonJsonpMapper.CustomJacksonJsonpMapper;
+import com.hmall.item.service.IItemIndexService;
+import com.hmall.item.service.IItemService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ItemIndexServiceImpl implements IItemIndexService {
+
+    /**
+     * bulk 请求中每个操作的 action 行大约占用的字节数
+     */
+    private static final int ACTION_LINE_BYTES = 64;
+
+    private final ElasticsearchClient esClient;
+    private final CustomJacksonJsonpMapper jsonpMapper;
+    private final IItemService itemService;
+    private final SearchProperties searchProperties;
+
+    @Override
+    public boolean indexExists() {
+        try {
+            return esClient.indices().exists(e -> e.index(searchProperties.getIndex())).value();
+        } catch (IOException e) {
+            throw new BizIllegalException("查询索引库失败", e);
+        }
+    }
+
+    @Override
+    public void rebuildIndex() {
+        long begin = System.currentTimeMillis();
+        LocalDateTime startTime = LocalDateTime.now();
+        String alias = searchProperties.getIndex();
+        // 1. 新建一个带时间戳的索引库，导入完成前搜索仍然使用旧索引库
+        String index = alias + "_" + begin;
+        createIndex(index);
+        long total;
+        try {
+            total = indexAll(index);
+        } catch (RuntimeException e) {
+            deleteIndexQuietly(index);
+            throw e;
+        }
+        // 2. 原子地把别名切换到新索引库并删除旧索引库，已删除、已下架商品的文档随旧索引库一起删除
+        swapAlias(alias, index);
+        // 3. 导入期间变更的商品可能只同步到了旧索引库，切换后重新同步一次
+        List<Long> changedIds = itemService.lambdaQuery()
+                .select(Item::getId)
+                .ge(Item::getUpdateTime, startTime)
+                .list()
+                .stream()
+                .map(Item::getId)
+                .collect(Collectors.toList());
+        List<Long> failedIds = syncByIds(changedIds);
+        if (!failedIds.isEmpty()) {
+            throw new BizIllegalException("索引库已切换，但导入期间变更的 " + failedIds.size() + " 个商品同步失败");
+        }
+        log.info("索引库 {} 全量重建完成，共导入 {} 条文档，耗时 {} ms",
+                index, total, System.currentTimeMillis() - begin);
+    }
+
+    @Override
+    public List<Long> syncByIds(Collection<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return Collections.emptyList();
+        }
+        BulkBuffer buffer = new BulkBuffer(searchProperties.getIndex());
+        // 按页大小分批查询，避免一次查询过多的 id
+        for (List<Long> chunk : CollUtil.split(ids, searchProperties.getSync().getPageSize())) {
+            // 1. 查询最新的商品数据
+            Map<Long, Item> itemMap = itemService.listByIds(chunk).stream()
+                    .collect(Collectors.toMap(Item::getId, Function.identity()));
+            // 2. 上架的商品写入索引库，其余的从索引库删除
+            for (Long id : chunk) {
+                Item item = itemMap.get(id);
+                if (item != null && Objects.equals(item.getStatus(), 1)) {
+                    buffer.index(toDoc(item));
+                } else {
+                    buffer.delete(id.toString());
+                }
+            }
+        }
+        buffer.flush();
+        return buffer.failedIds;
+    }
+
+    /**
+     * 按主键顺序分页读取全部上架商品，每一页交给线程池写入索引库。
+     * 只有一个读游标，id 再稀疏也不会产生空任务
+     */
+    private long indexAll(String index) {
+        SearchProperties.Sync sync = searchProperties.getSync();
+        int pageSize = sync.getPageSize();
+        ExecutorService executor = Executors.newFixedThreadPool(sync.getRebuildThreads());
+        // 限制已读取但还没写入的页数，避免读得太快占满内存
+        Semaphore permits = new Semaphore(sync.getRebuildThreads() * 2);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        long count = 0;
+        long lastId = 0;
+        try {
+            while (true) {
+                // 1. 基于上一页最后的 id 查询下一页，避免 limit 深分页
+                List<Item> items = itemService.lambdaQuery()
+                        .eq(Item::getStatus, 1)
+                        .gt(Item::getId, lastId)
+                        .orderByAsc(Item::getId)
+                        .last("LIMIT " + pageSize)
+                        .list();
+                if (CollUtils.isEmpty(items)) {
+                    break;
+                }
+                // 2. 交给线程池写入，缓冲区达到字节上限会自动提交
+                permits.acquireUninterruptibly();
+                futures.add(CompletableFuture.runAsync(() -> {
+                    BulkBuffer buffer = new BulkBuffer(index);
+                    for (Item item : items) {
+                        buffer.index(toDoc(item));
+                    }
+                    buffer.flush();
+                    // 新索引库缺少文档时不能切换别名
+                    if (!buffer.failedIds.isEmpty()) {
+                        throw new BizIllegalException("全量导入时 " + buffer.failedIds.size() + " 条文档写入失败");
+                    }
+                }, executor).whenComplete((r, e) -> permits.release()));
+                count += items.size();
+                lastId = items.get(items.size() - 1).getId();
+                if (items.size() < pageSize) {
+                    break;
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+        return count;
+    }
+
+    /**
+     * 把别名指向新索引库，同时删除别名原来指向的索引库。
+     * 旧版本直接使用别名作为索引库名称，这种索引库也一并删除
+     */
+    private void swapAlias(String alias, String index) {
+        try {
+            List<String> oldIndices = new ArrayList<>();
+            boolean concrete = false;
+            if (esClient.indices().existsAlias(e -> e.name(alias)).value()) {
+                oldIndices.addAll(esClient.indices().getAlias(g -> g.name(alias)).result().keySet());
+            } else if (esClient.indices().exists(e -> e.index(alias)).value()) {
+                concrete = true;
+            }
+            List<Action> actions = new ArrayList<>();
+            for (String old : oldIndices) {
+                actions.add(Action.of(a -> a.removeIndex(r -> r.index(old))));
+            }
+            if (concrete) {
+                actions.add(Action.of(a -> a.removeIndex(r -> r.index(alias))));
+            }
+            actions.add(Action.of(a -> a.add(add -> add.index(index).alias(alias))));
+            esClient.indices().updateAliases(u -> u.actions(actions));
+        } catch (IOException e) {
+            throw new BizIllegalException("切换索引库别名失败", e);
+        }
+    }
+
+    private void createIndex(String index) {
+        try {
+            esClient.indices().create(c -> c
+                    .index(index)
+                    .mappings(m -> m
+                            .properties("id", p -> p.keyword(k -> k))
+                            .properties("name", p -> p.text(t -> t.analyzer("ik_max_word")))
+                            .properties("price", p -> p.integer(i -> i))
+                            .properties("stock", p -> p.integer(i -> i))
+                            .properties("image", p -> p.keyword(k -> k.index(false)))
+                            .properties("category", p -> p.keyword(k -> k))
+                            .properties("brand", p -> p.keyword(k -> k))
+                            .properties("sold", p -> p.integer(i -> i))
+                            .properties("commentCount", p -> p.integer(i -> i.index(false)))
+                            .properties("isAD", p -> p.boolean_(b -> b))
+                            .properties("updateTime", p -> p.date(d -> d))
+                    )
+            );
+        } catch (IOException e) {
+            throw new BizIllegalException("创建索引库失败", e);
+        }
+    }
+
+    private void deleteIndexQuietly(String index) {
+        try {
+            esClient.indices().delete(d -> d.index(index));
+        } catch (Exception e) {
+            log.error("删除重建失败的索引库 {} 失败", index, e);
+        }
+    }
+
+    private ItemDoc toDoc(Item item) {
+        return BeanUtil.copyProperties(item, ItemDoc.class);
+    }
+
+    /**
+     * bulk 请求缓冲区，按请求体字节数而不是文档条数分批，避免大文档撑爆单次请求。
+     * 单个文档写入失败（例如 429 es_rejected_execution、映射错误）时不抛出异常，记录在 failedIds 中由调用方重试
+     */
+    private class BulkBuffer {
+        private final String index;
+        private final List<BulkOperation> operations = new ArrayList<>();
+        private final List<Long> failedIds = new ArrayList<>();
+        private long bytes;
+
+        BulkBuffer(String index) {
+            this.index = index;
+        }
+
+        void index(ItemDoc doc) {
+            add(BulkOperation.of(op -> op.index(idx -> idx
+                    .index(index)
+                    .id(doc.getId())
+                    .document(doc)
+            )), ACTION_LINE_BYTES + sizeOf(doc));
+        }
+
+        void delete(String id) {
+            add(BulkOperation.of(op -> op.delete(d -> d
+                    .index(index)
+                    .id(id)
+            )), ACTION_LINE_BYTES);
+        }
+
+        private void add(BulkOperation operation, long size) {
+            if (!operations.isEmpty() && bytes + size > searchProperties.getSync().getBulkMaxBytes()) {
+                flush();
+            }
+            operations.add(operation);
+            bytes += size;
+        }
+
+        void flush() {
+            if (operations.isEmpty()) {
+                return;
+            }
+            try {
+                BulkResponse response = esClient.bulk(b -> b.operations(operations));
+                if (response.errors()) {
+                    for (BulkResponseItem item : response.items()) {
+                        if (item.error() != null) {
+                            log.error("文档 {} 同步失败：{}", item.id(), item.error().reason());
+                            failedIds.add(Long.valueOf(item.id()));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new BizIllegalException("批量同步索引库失败", e);
+            } finally {
+                operations.clear();
+                bytes = 0;
+            }
+        }
+
+        private long sizeOf(ItemDoc doc) {
+            try {
+                return jsonpMapper.objectMapper().writeValueAsBytes(doc).length;
+            } catch (JsonProcessingException e) {
+                throw new BizIllegalException(e);
+            }
+        }
+    }
+}
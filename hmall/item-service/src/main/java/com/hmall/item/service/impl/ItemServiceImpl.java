@@ -1,40 +1,485 @@
 package com.hmall.item.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.OrderItem;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.api.domain.dto.ItemPriceStockDTO;
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.OrderStockRestoreDTO;
+import com.hmall.api.domain.dto.StockDeductResultDTO;
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.common.exception.BadRequestException;
 import com.hmall.common.exception.BizIllegalException;
 import com.hmall.common.utils.BeanUtils;
+import com.hmall.common.utils.CollUtils;
+import com.hmall.item.cache.ItemCache;
+import com.hmall.item.config.StockProperties;
+import com.hmall.item.domain.event.ItemChangedEvent;
 import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.query.CursorPageQuery;
+import com.hmall.item.enums.CountMode;
 import com.hmall.item.mapper.ItemMapper;
+import com.hmall.item.mapper.StockOrderLogMapper;
+import com.hmall.item.service.IHotStockService;
 import com.hmall.item.service.IItemService;
+import com.hmall.item.utils.CursorUtils;
+import io.seata.core.context.RootContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.beans.Transient;
-import java.util.Collection;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
+@RequiredArgsConstructor
 public class ItemServiceImpl extends ServiceImpl<ItemMapper, Item> implements IItemService {
 
+    private final ApplicationEventPublisher eventPublisher;
+    private final ItemCache itemCache;
+    private final IHotStockService hotStockService;
+    private final TransactionTemplate transactionTemplate;
+    private final StockOrderLogMapper stockOrderLogMapper;
+    private final StockProperties stockProperties;
+
     @Override
     @Transactional
     public void deductStock(List<OrderDetailDTO> items) {
+        // 1. 热点商品在 Redis 中预扣，扣减量异步回写数据库
+        Map<Boolean, List<OrderDetailDTO>> parts = items.stream()
+                .collect(Collectors.partitioningBy(item -> hotStockService.isHot(item.getItemId())));
+        List<OrderDetailDTO> hotItems = parts.get(true);
+        List<OrderDetailDTO> normalItems = parts.get(false);
+        if (!hotItems.isEmpty()) {
+            // 分布式事务回滚时只回滚数据库，无法释放 Redis 中预扣的库存
+            if (RootContext.inGlobalTransaction()) {
+                throw new BizIllegalException("热点商品不支持在分布式事务中扣减库存");
+            }
+            hotStockService.reserve(hotItems);
+            // Redis 不参与数据库事务，本地事务回滚后释放预扣的库存
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        hotStockService.release(hotItems);
+                    }
+                }
+            });
+        }
+        if (normalItems.isEmpty()) {
+            return;
+        }
+        // 2. 普通商品直接扣减数据库
         String sqlStatement = "com.hmall.item.mapper.ItemMapper.updateStock";
         boolean r = false;
         try {
-            r = executeBatch(items, (sqlSession, entity) -> sqlSession.update(sqlStatement, entity));
+            r = executeBatch(normalItems, (sqlSession, entity) -> sqlSession.update(sqlStatement, entity));
         } catch (Exception e) {
             throw new BizIllegalException("更新库存异常，可能是库存不足!", e);
         }
         if (!r) {
             throw new BizIllegalException("库存不足！");
         }
+        publishChanged(normalItems.stream().map(OrderDetailDTO::getItemId).collect(Collectors.toSet()));
+    }
+
+    @Override
+    public List<StockDeductResultDTO> deductStockChecked(Long orderId, List<OrderDetailDTO> items) {
+        if (orderId == null) {
+            throw new BadRequestException("扣减库存的订单id不能为空");
+        }
+        // 1. 同一商品的多条明细先合并，再拆分热点商品和普通商品
+        Map<Long, Integer> nums = items.stream().collect(Collectors.toMap(
+                OrderDetailDTO::getItemId, OrderDetailDTO::getNum, Integer::sum, LinkedHashMap::new));
+        List<OrderDetailDTO> hotItems = new ArrayList<>();
+        Map<Long, Integer> normalNums = new LinkedHashMap<>();
+        nums.forEach((id, num) -> {
+            if (hotStockService.isHot(id)) {
+                hotItems.add(new OrderDetailDTO().setItemId(id).setNum(num));
+            } else {
+                normalNums.put(id, num);
+            }
+        });
+        // 2. 在同一个本地事务中登记订单并扣减，扣减失败时登记随事务回滚。
+        // 返回库存不足的商品及其库存，为空表示扣减成功，为 null 表示普通商品库存不足，需要回滚后重新查询
+        Map<Long, Integer> failedStocks = transactionTemplate.execute(status -> {
+            // 2.1. 订单已登记：已扣减过说明是调用方重试，直接返回成功；已归还过说明调用方已放弃本次扣减，不能再扣减
+            if (stockOrderLogMapper.insertIgnore(orderId, StockOrderLogMapper.DEDUCTED) == 0) {
+                Integer logStatus = stockOrderLogMapper.selectStatusForUpdate(orderId);
+                if (Objects.equals(logStatus, StockOrderLogMapper.DEDUCTED)) {
+                    return Map.of();
+                }
+                return queryAllStocks(normalNums, hotItems);
+            }
+            // 2.2. 预扣热点商品，失败时普通商品也不再扣减，只查询库存如实返回每个商品是否充足
+            if (!hotItems.isEmpty()) {
+                Long failedId = hotStockService.tryReserve(hotItems);
+                if (failedId != null) {
+                    status.setRollbackOnly();
+                    return findInsufficient(normalNums, hotItems, failedId);
+                }
+                // Redis 不参与数据库事务，本地事务回滚后释放预扣的库存
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_ROLLED_BACK) {
+                            releaseHotStock(hotItems);
+                        }
+                    }
+                });
+            }
+            // 2.3. 普通商品用一条带库存条件的 UPDATE 扣减，影响行数不足说明有商品库存不足，回滚本地事务
+            if (!normalNums.isEmpty() && baseMapper.conditionalDeductStock(normalNums) < normalNums.size()) {
+                status.setRollbackOnly();
+                return null;
+            }
+            return Map.of();
+        });
+        if (failedStocks != null) {
+            if (failedStocks.isEmpty()) {
+                publishChanged(normalNums.keySet());
+                return buildDeductResults(nums, null);
+            }
+            return buildDeductResults(nums, failedStocks);
+        }
+        // 3. 普通商品扣减失败，事务已回滚，查询当前库存找出不足的商品
+        Map<Long, Integer> stocks = queryStocks(normalNums.keySet());
+        Map<Long, Integer> normalFailed = findInsufficient(normalNums, stocks);
+        if (normalFailed.isEmpty()) {
+            // 回滚后其它订单归还了库存，重新查询时已经充足，但本次没有扣减任何商品，普通商品全部按失败返回
+            normalNums.keySet().forEach(id -> normalFailed.put(id, stocks.get(id)));
+        }
+        return buildDeductResults(nums, normalFailed);
+    }
+
+    /**
+     * 热点商品预扣失败时查询全部商品的库存，返回库存不足的商品及其库存
+     */
+    private Map<Long, Integer> findInsufficient(Map<Long, Integer> normalNums, List<OrderDetailDTO> hotItems, Long failedId) {
+        Map<Long, Integer> failedStocks = findInsufficient(normalNums);
+        Map<Long, Integer> hotStocks = hotStockService.queryStock(
+                hotItems.stream().map(OrderDetailDTO::getItemId).collect(Collectors.toList()));
+        for (OrderDetailDTO hotItem : hotItems) {
+            Integer stock = hotStocks.get(hotItem.getItemId());
+            if (hotItem.getItemId().equals(failedId) || stock == null || stock < hotItem.getNum()) {
+                failedStocks.put(hotItem.getItemId(), stock);
+            }
+        }
+        return failedStocks;
+    }
+
+    /**
+     * 查询全部商品的当前库存，用于没有扣减任何商品时按失败返回
+     */
+    private Map<Long, Integer> queryAllStocks(Map<Long, Integer> normalNums, List<OrderDetailDTO> hotItems) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        if (!normalNums.isEmpty()) {
+            Map<Long, Integer> normalStocks = queryStocks(normalNums.keySet());
+            normalNums.keySet().forEach(id -> stocks.put(id, normalStocks.get(id)));
+        }
+        if (!hotItems.isEmpty()) {
+            List<Long> hotIds = hotItems.stream().map(OrderDetailDTO::getItemId).collect(Collectors.toList());
+            Map<Long, Integer> hotStocks = hotStockService.queryStock(hotIds);
+            hotIds.forEach(id -> stocks.put(id, hotStocks.get(id)));
+        }
+        return stocks;
+    }
+
+    /**
+     * 查询普通商品的当前库存，返回库存不足或不存在的商品及其库存
+     */
+    private Map<Long, Integer> findInsufficient(Map<Long, Integer> normalNums) {
+        if (normalNums.isEmpty()) {
+            return new HashMap<>();
+        }
+        return findInsufficient(normalNums, queryStocks(normalNums.keySet()));
+    }
+
+    private Map<Long, Integer> queryStocks(Collection<Long> ids) {
+        return lambdaQuery()
+                .select(Item::getId, Item::getStock)
+                .in(Item::getId, ids)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(Item::getId, Item::getStock));
+    }
+
+    private Map<Long, Integer> findInsufficient(Map<Long, Integer> normalNums, Map<Long, Integer> stocks) {
+        Map<Long, Integer> failedStocks = new HashMap<>();
+        normalNums.forEach((id, num) -> {
+            Integer stock = stocks.get(id);
+            if (stock == null || stock < num) {
+                failedStocks.put(id, stock);
+            }
+        });
+        return failedStocks;
+    }
+
+    @Override
+    @Transactional
+    public void restoreStock(List<OrderStockRestoreDTO> restores) {
+        // 1. 在同一个本地事务中把订单登记为已归还，只归还扣减过且没有归还过的订单
+        Map<Long, Integer> nums = new LinkedHashMap<>();
+        for (OrderStockRestoreDTO restore : restores) {
+            if (restore.getOrderId() == null) {
+                throw new BadRequestException("归还库存的订单id不能为空");
+            }
+            // 没有扣减记录说明扣减没有执行或已回滚，登记后迟到的扣减请求不会再扣减
+            if (stockOrderLogMapper.insertIgnore(restore.getOrderId(), StockOrderLogMapper.RESTORED) == 1) {
+                continue;
+            }
+            // 已经归还过，例如调用超时后调用方重试
+            if (stockOrderLogMapper.markRestored(restore.getOrderId()) == 0) {
+                continue;
+            }
+            // 同一商品的多条明细合并
+            restore.getDetails().forEach(detail -> nums.merge(detail.getItemId(), detail.getNum(), Integer::sum));
+        }
+        if (nums.isEmpty()) {
+            return;
+        }
+        // 2. 热点商品在事务提交后加回 Redis，回写任务会把差值同步到数据库
+        List<OrderDetailDTO> hotItems = new ArrayList<>();
+        Map<Long, Integer> normalNums = new LinkedHashMap<>();
+        nums.forEach((id, num) -> {
+            if (hotStockService.isHot(id)) {
+                hotItems.add(new OrderDetailDTO().setItemId(id).setNum(num));
+            } else {
+                normalNums.put(id, num);
+            }
+        });
+        if (!hotItems.isEmpty()) {
+            // Redis 不参与数据库事务，事务回滚时登记也会回滚，调用方重试时再归还
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    releaseHotStock(hotItems);
+                }
+            });
+        }
+        // 3. 普通商品一条语句加回数据库
+        if (!normalNums.isEmpty()) {
+            baseMapper.batchRestoreStock(normalNums);
+            publishChanged(normalNums.keySet());
+        }
+    }
+
+    /**
+     * 定时删除过期的订单库存记录
+     */
+    @Scheduled(cron = "${hm.stock.order-log-cleanup-cron:0 40 3 * * ?}")
+    public void cleanOrderLog() {
+        LocalDateTime deadline = LocalDateTime.now().minus(stockProperties.getOrderLogRetention());
+        while (stockOrderLogMapper.deleteBefore(deadline, 1000) == 1000) {
+            // 分批删除，避免长时间锁表
+        }
+    }
+
+    /**
+     * 生成扣减结果，failedStocks 中是库存不足的商品及其当前库存，为 null 表示全部成功
+     */
+    private List<StockDeductResultDTO> buildDeductResults(Map<Long, Integer> nums, Map<Long, Integer> failedStocks) {
+        List<StockDeductResultDTO> results = new ArrayList<>(nums.size());
+        nums.forEach((id, num) -> {
+            boolean failed = failedStocks != null && failedStocks.containsKey(id);
+            results.add(new StockDeductResultDTO(id, num, !failed, failed ? failedStocks.get(id) : null));
+        });
+        return results;
+    }
+
+    private void releaseHotStock(List<OrderDetailDTO> hotItems) {
+        if (!hotItems.isEmpty()) {
+            // Redis 不参与数据库事务，需要手动释放
+            hotStockService.release(hotItems);
+        }
+    }
+
+    @Override
+    public ItemDTO queryItemById(Long id) {
+        List<ItemDTO> items = queryItemByIds(CollUtils.singletonList(id));
+        return items.isEmpty() ? null : items.get(0);
     }
 
     @Override
     public List<ItemDTO> queryItemByIds(Collection<Long> ids) {
-        return BeanUtils.copyList(listByIds(ids), ItemDTO.class);
+        // 先查缓存，未命中的 id 批量查询数据库
+        return itemCache.getAll(ids, this::loadItems);
+    }
+
+    @Override
+    public List<ItemDTO> queryItemByIds(Collection<Long> ids, boolean freshStock) {
+        List<ItemDTO> items = queryItemByIds(ids);
+        if (!freshStock || items.isEmpty()) {
+            return items;
+        }
+        // 缓存中的库存可能是旧的，需要实时库存时只查 id 和 stock 两列覆盖缓存中的值
+        Map<Long, Integer> stocks = lambdaQuery()
+                .select(Item::getId, Item::getStock)
+                .in(Item::getId, ids)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(Item::getId, Item::getStock));
+        // 热点商品的库存以 Redis 为准
+        Set<Long> hotIds = ids.stream().filter(hotStockService::isHot).collect(Collectors.toSet());
+        if (!hotIds.isEmpty()) {
+            stocks.putAll(hotStockService.queryStock(hotIds));
+        }
+        // 缓存中的对象是共享的，不能直接修改
+        List<ItemDTO> result = new ArrayList<>(items.size());
+        for (ItemDTO item : items) {
+            ItemDTO copy = BeanUtils.copyBean(item, ItemDTO.class);
+            copy.setStock(stocks.get(item.getId()));
+            result.add(copy);
+        }
+        return result;
+    }
+
+    @Override
+    public List<ItemPriceStockDTO> queryItemPriceStock(Collection<Long> ids) {
+        // 只查需要的列，手动转换，避免反射拷贝
+        List<Item> items = lambdaQuery()
+                .select(Item::getId, Item::getPrice, Item::getStatus, Item::getStock)
+                .in(Item::getId, ids)
+                .list();
+        // 热点商品的库存以 Redis 为准
+        Set<Long> hotIds = ids.stream().filter(hotStockService::isHot).collect(Collectors.toSet());
+        Map<Long, Integer> hotStocks = hotIds.isEmpty() ? Map.of() : hotStockService.queryStock(hotIds);
+        List<ItemPriceStockDTO> list = new ArrayList<>(items.size());
+        for (Item item : items) {
+            list.add(new ItemPriceStockDTO(item.getId(), item.getPrice(), item.getStatus(),
+                    hotStocks.getOrDefault(item.getId(), item.getStock())));
+        }
+        return list;
+    }
+
+    @Override
+    public List<ItemSnapshotDTO> queryItemSnapshots(Collection<Long> ids) {
+        List<Item> items = lambdaQuery()
+                .select(Item::getId, Item::getName, Item::getSpec, Item::getPrice, Item::getImage)
+                .in(Item::getId, ids)
+                .list();
+        List<ItemSnapshotDTO> list = new ArrayList<>(items.size());
+        for (Item item : items) {
+            list.add(new ItemSnapshotDTO(item.getId(), item.getName(), item.getSpec(), item.getPrice(), item.getImage()));
+        }
+        return list;
+    }
+
+    private Map<Long, ItemDTO> loadItems(Collection<Long> ids) {
+        return listByIds(ids).stream()
+                .collect(Collectors.toMap(Item::getId, item -> BeanUtils.copyBean(item, ItemDTO.class)));
+    }
+
+    @Override
+    public CursorPageDTO<ItemDTO> queryItemByPage(CursorPageQuery query) {
+        return queryItemByPage(query, new LambdaQueryWrapper<>());
+    }
+
+    @Override
+    public CursorPageDTO<ItemDTO> queryItemByPage(CursorPageQuery query, LambdaQueryWrapper<Item> wrapper) {
+        boolean noCondition = wrapper.isEmptyOfWhere();
+        Page<Item> page;
+        // 1. 带了游标，按 (update_time, id) 向后翻页，只需要 LIMIT pageSize，不需要丢弃前面的数据
+        if (StrUtil.isNotBlank(query.getCursor())) {
+            if (!query.sortedByDefault()) {
+                throw new BadRequestException("游标翻页只支持按更新时间倒序");
+            }
+            JSONArray values = CursorUtils.decode(query.getCursor(), CursorUtils.TYPE_DB);
+            LocalDateTime updateTime;
+            Long id;
+            try {
+                updateTime = LocalDateTime.parse(values.getStr(0));
+                id = values.getLong(1);
+            } catch (RuntimeException e) {
+                throw new BadRequestException("翻页游标格式错误");
+            }
+            if (id == null) {
+                throw new BadRequestException("翻页游标格式错误");
+            }
+            wrapper.and(w -> w
+                    .lt(Item::getUpdateTime, updateTime)
+                    .or(o -> o.eq(Item::getUpdateTime, updateTime).lt(Item::getId, id)));
+            page = new Page<>(1, query.getPageSize());
+        } else {
+            page = new Page<>(query.getPageNo(), query.getPageSize());
+        }
+        // 2. 排序，默认排序额外加上 id 保证顺序稳定，才能生成游标
+        if (query.sortedByDefault()) {
+            page.addOrder(OrderItem.desc("update_time"), OrderItem.desc("id"));
+        } else {
+            page.addOrder(Boolean.FALSE.equals(query.getIsAsc()) ? OrderItem.desc(query.getSortBy()) : OrderItem.asc(query.getSortBy()));
+        }
+        // 3. 只有精确统计才执行 COUNT(*)，只查 id 和生成游标用的 update_time，商品数据从缓存中取
+        page.setSearchCount(query.getCountMode() == CountMode.EXACT);
+        wrapper.select(Item::getId, Item::getUpdateTime);
+        page(page, wrapper);
+        // 4. 统计总数
+        Long total = null;
+        if (query.getCountMode() == CountMode.EXACT) {
+            total = page.getTotal();
+        } else if (query.getCountMode() == CountMode.APPROX && noCondition) {
+            // 不带条件时用表统计信息估算，带条件时无法估算
+            total = baseMapper.estimateCount();
+        }
+        // 5. 生成下一页游标
+        List<Item> records = page.getRecords();
+        String nextCursor = null;
+        if (query.sortedByDefault() && records.size() == query.getPageSize()
+                && records.get(records.size() - 1).getUpdateTime() != null) {
+            Item last = records.get(records.size() - 1);
+            nextCursor = CursorUtils.encode(CursorUtils.TYPE_DB, List.of(last.getUpdateTime().toString(), last.getId()));
+        }
+        List<ItemDTO> items = itemCache.getAllInOrder(
+                records.stream().map(Item::getId).collect(Collectors.toList()), this::loadItems);
+        return CursorPageDTO.of(total, query.getPageSize(), items, nextCursor);
+    }
+
+    @Override
+    public void saveItem(ItemDTO itemDTO) {
+        Item item = BeanUtils.copyBean(itemDTO, Item.class);
+        save(item);
+        publishChanged(CollUtils.singletonList(item.getId()));
+    }
+
+    @Override
+    public void updateItem(ItemDTO itemDTO) {
+        Item item = BeanUtils.copyBean(itemDTO, Item.class);
+        // 热点商品的库存以 Redis 为准，修改 Redis 中的库存，差值随扣减量回写数据库
+        if (item.getStock() != null && hotStockService.isHot(item.getId())
+                && hotStockService.setStock(item.getId(), item.getStock())) {
+            item.setStock(null);
+        }
+        updateById(item);
+        publishChanged(CollUtils.singletonList(itemDTO.getId()));
+    }
+
+    @Override
+    public void updateItemStatus(Long id, Integer status) {
+        Item item = new Item();
+        item.setId(id);
+        item.setStatus(status);
+        updateById(item);
+        publishChanged(CollUtils.singletonList(id));
+    }
+
+    @Override
+    public void deleteItem(Long id) {
+        removeById(id);
+        publishChanged(CollUtils.singletonList(id));
+    }
+
+    private void publishChanged(Collection<Long> ids) {
+        eventPublisher.publishEvent(new ItemChangedEvent(ids));
     }
 }
@@ -0,0 +1,361 @@
+package com.hmall.item.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StatsAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.TrackHits;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHits;
+import co.elastic.clients.json.JsonData;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.common.domain.CursorPageDTO;
+import com.hmall.common.exception.BadRequestException;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.BeanUtils;
+import com.hmall.item.config.SearchProperties;
+import com.hmall.item.domain.dto.ItemDoc;
+import com.hmall.item.domain.po.Item;
+import com.hmall.item.domain.query.ItemPageQuery;
+import com.hmall.item.domain.vo.FilterBucketVO;
+import com.hmall.item.domain.vo.ItemFiltersVO;
+import com.hmall.item.enums.CountMode;
+import com.hmall.item.enums.SearchMode;
+import com.hmall.item.service.IItemService;
+import com.hmall.item.service.ISearchService;
+import com.hmall.item.utils.CursorUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchServiceImpl implements ISearchService {
+
+    private final ElasticsearchClient esClient;
+    private final IItemService itemService;
+    private final SearchProperties searchProperties;
+
+    /**
+     * 热门的空查询、纯关键字查询的过滤项缓存，key 为关键字
+     */
+    private Cache<String, ItemFiltersVO> filtersCache;
+
+    @PostConstruct
+    public void initFiltersCache() {
+        SearchProperties.Filters filters = searchProperties.getFilters();
+        filtersCache = Caffeine.newBuilder()
+                .maximumSize(filters.getCacheSize())
+                .expireAfterWrite(filters.getCacheTtl())
+                .build();
+    }
+
+    @Override
+    public CursorPageDTO<ItemDTO> search(ItemPageQuery query) {
+        // 1. DB 模式，直接走 MySQL
+        if (searchProperties.getMode() == SearchMode.DB) {
+            return searchByDb(query);
+        }
+        // 2. ES 模式，异常时按配置降级
+        try {
+            return searchByEs(query);
+        } catch (BadRequestException e) {
+            // 参数错误，降级也查不出结果
+            throw e;
+        } catch (Exception e) {
+            if (!searchProperties.getFallbackToDb()) {
+                throw new BizIllegalException("搜索服务异常", e);
+            }
+            // ES 的游标不能用于 MySQL 查询
+            if (StrUtil.isNotBlank(query.getCursor()) && !CursorUtils.isType(query.getCursor(), CursorUtils.TYPE_DB)) {
+                throw new BizIllegalException("搜索服务繁忙，请从第一页重新查询", e);
+            }
+            log.error("ES 搜索异常，降级为 MySQL 查询，参数：{}", query, e);
+            return searchByDb(query);
+        }
+    }
+
+    @Override
+    public ItemFiltersVO queryFilters(ItemPageQuery query) {
+        // 1. 带了品牌、分类、价格条件的查询组合太多，不走缓存
+        if (StrUtil.isNotBlank(query.getBrand()) || StrUtil.isNotBlank(query.getCategory())
+                || query.getMinPrice() != null || query.getMaxPrice() != null) {
+            return loadFilters(query);
+        }
+        // 2. 空查询或只带关键字的查询，先查缓存
+        String cacheKey = StrUtil.trimToEmpty(query.getKey());
+        return filtersCache.get(cacheKey, k -> loadFilters(query));
+    }
+
+    private ItemFiltersVO loadFilters(ItemPageQuery query) {
+        if (searchProperties.getMode() == SearchMode.DB) {
+            return queryFiltersByDb(query);
+        }
+        try {
+            return queryFiltersByEs(query);
+        } catch (Exception e) {
+            if (!searchProperties.getFallbackToDb()) {
+                throw new BizIllegalException("搜索服务异常", e);
+            }
+            log.error("ES 聚合异常，降级为 MySQL 查询，参数：{}", query, e);
+            return queryFiltersByDb(query);
+        }
+    }
+
+    private ItemFiltersVO queryFiltersByEs(ItemPageQuery query) throws Exception {
+        int bucketSize = searchProperties.getFilters().getBucketSize();
+        // 1. 一次请求完成品牌、分类、价格三组聚合，不返回文档
+        SearchResponse<Void> response = esClient.search(s -> s
+                        .index(searchProperties.getIndex())
+                        .size(0)
+                        .query(q -> q.bool(buildBoolQuery(query)))
+                        .aggregations("brand_agg", a -> a.terms(t -> t.field("brand").size(bucketSize)))
+                        .aggregations("category_agg", a -> a.terms(t -> t.field("category").size(bucketSize)))
+                        .aggregations("price_stats", a -> a.stats(st -> st.field("price"))),
+                Void.class
+        );
+        // 2. 解析聚合结果
+        Map<String, Aggregate> aggregations = response.aggregations();
+        ItemFiltersVO vo = new ItemFiltersVO();
+        vo.setBrands(toBuckets(aggregations.get("brand_agg").sterms().buckets().array()));
+        vo.setCategories(toBuckets(aggregations.get("category_agg").sterms().buckets().array()));
+        StatsAggregate stats = aggregations.get("price_stats").stats();
+        if (stats.count() > 0) {
+            vo.setMinPrice((int) stats.min());
+            vo.setMaxPrice((int) stats.max());
+            vo.setAvgPrice((int) Math.round(stats.avg()));
+        }
+        return vo;
+    }
+
+    private List<FilterBucketVO> toBuckets(List<StringTermsBucket> buckets) {
+        return buckets.stream()
+                .map(b -> new FilterBucketVO(b.key().stringValue(), b.docCount()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 降级方案，用一条 GROUP BY brand, category 语句算出所有过滤项，而不是每个过滤项各查一次
+     */
+    private ItemFiltersVO queryFiltersByDb(ItemPageQuery query) {
+        // 1. 按品牌、分类分组统计
+        QueryWrapper<Item> wrapper = new QueryWrapper<Item>()
+                .select("brand", "category", "COUNT(*) AS total",
+                        "MIN(price) AS min_price", "MAX(price) AS max_price", "SUM(price) AS sum_price")
+                .like(StrUtil.isNotBlank(query.getKey()), "name", query.getKey())
+                .eq(StrUtil.isNotBlank(query.getBrand()), "brand", query.getBrand())
+                .eq(StrUtil.isNotBlank(query.getCategory()), "category", query.getCategory())
+                .eq("status", 1)
+                .ge(query.getMinPrice() != null, "price", query.getMinPrice())
+                .le(query.getMaxPrice() != null, "price", query.getMaxPrice())
+                .groupBy("brand", "category");
+        List<Map<String, Object>> rows = itemService.listMaps(wrapper);
+        // 2. 在内存中汇总
+        Map<String, Long> brandCounts = new HashMap<>();
+        Map<String, Long> categoryCounts = new HashMap<>();
+        long total = 0, sum = 0;
+        Integer min = null, max = null;
+        for (Map<String, Object> row : rows) {
+            long count = ((Number) row.get("total")).longValue();
+            brandCounts.merge(String.valueOf(row.get("brand")), count, Long::sum);
+            categoryCounts.merge(String.valueOf(row.get("category")), count, Long::sum);
+            int rowMin = ((Number) row.get("min_price")).intValue();
+            int rowMax = ((Number) row.get("max_price")).intValue();
+            min = min == null ? rowMin : Math.min(min, rowMin);
+            max = max == null ? rowMax : Math.max(max, rowMax);
+            sum += ((Number) row.get("sum_price")).longValue();
+            total += count;
+        }
+        // 3. 封装结果
+        ItemFiltersVO vo = new ItemFiltersVO();
+        vo.setBrands(topBuckets(brandCounts));
+        vo.setCategories(topBuckets(categoryCounts));
+        vo.setMinPrice(min);
+        vo.setMaxPrice(max);
+        vo.setAvgPrice(total == 0 ? null : (int) Math.round((double) sum / total));
+        return vo;
+    }
+
+    private List<FilterBucketVO> topBuckets(Map<String, Long> counts) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(searchProperties.getFilters().getBucketSize())
+                .map(e -> new FilterBucketVO(e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    private CursorPageDTO<ItemDTO> searchByEs(ItemPageQuery query) throws Exception {
+        // 1. 构建请求并查询
+        SearchRequest.Builder request = new SearchRequest.Builder()
+                .index(searchProperties.getIndex())
+                .query(buildScoredQuery(query))
+                .size(query.getPageSize())
+                .sort(buildSorts(query))
+                .trackTotalHits(buildTrackHits(query.getCountMode()))
+                .highlight(h -> h
+                        .fields("name", f -> f
+                                .preTags("<em>")
+                                .postTags("</em>")
+                        )
+                );
+        if (StrUtil.isNotBlank(query.getCursor())) {
+            // 1.1. 带了游标，用 search_after 翻页，分片只需要取 size 条，不受 from + size 的深度限制
+            request.searchAfter(toFieldValues(CursorUtils.decode(query.getCursor(), CursorUtils.TYPE_ES)));
+        } else {
+            request.from(query.from());
+        }
+        SearchResponse<ItemDoc> response = esClient.search(request.build(), ItemDoc.class);
+        // 2. 解析结果
+        List<Hit<ItemDoc>> hits = response.hits().hits();
+        List<ItemDTO> list = new ArrayList<>(hits.size());
+        for (Hit<ItemDoc> hit : hits) {
+            ItemDTO item = BeanUtils.copyBean(hit.source(), ItemDTO.class);
+            if (item == null) {
+                continue;
+            }
+            // 2.1. 索引库中只保存上架商品
+            item.setStatus(1);
+            // 2.2. 用高亮片段替换商品名称
+            Map<String, List<String>> highlight = hit.highlight();
+            if (highlight != null && highlight.containsKey("name")) {
+                item.setName(String.join("", highlight.get("name")));
+            }
+            list.add(item);
+        }
+        // 3. 最后一条数据的排序值就是下一页的游标
+        String nextCursor = null;
+        if (hits.size() == query.getPageSize()) {
+            List<Object> sortValues = hits.get(hits.size() - 1).sort().stream()
+                    .map(FieldValue::_get)
+                    .collect(Collectors.toList());
+            nextCursor = CursorUtils.encode(CursorUtils.TYPE_ES, sortValues);
+        }
+        // 4. 封装分页结果
+        TotalHits totalHits = response.hits().total();
+        Long total = totalHits == null ? null : totalHits.value();
+        return CursorPageDTO.of(total, query.getPageSize(), list, nextCursor);
+    }
+
+    private TrackHits buildTrackHits(CountMode countMode) {
+        switch (countMode) {
+            case NONE:
+                return TrackHits.of(t -> t.enabled(false));
+            case APPROX:
+                // ES 默认精确统计到 10000，超过后只返回下限
+                return TrackHits.of(t -> t.count(10000));
+            default:
+                return TrackHits.of(t -> t.enabled(true));
+        }
+    }
+
+    private List<FieldValue> toFieldValues(JSONArray values) {
+        List<FieldValue> fieldValues = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value instanceof Integer || value instanceof Long) {
+                fieldValues.add(FieldValue.of(((Number) value).longValue()));
+            } else if (value instanceof Number) {
+                fieldValues.add(FieldValue.of(((Number) value).doubleValue()));
+            } else if (value instanceof Boolean) {
+                fieldValues.add(FieldValue.of((Boolean) value));
+            } else {
+                fieldValues.add(FieldValue.of(String.valueOf(value)));
+            }
+        }
+        return fieldValues;
+    }
+
+    /**
+     * 构建过滤条件，关键字参与算分，其它条件都放到 filter 中，不参与算分且可以被缓存
+     */
+    private BoolQuery buildBoolQuery(ItemPageQuery query) {
+        BoolQuery.Builder bool = new BoolQuery.Builder();
+        // 1. 关键字搜索
+        if (StrUtil.isNotBlank(query.getKey())) {
+            bool.must(m -> m.match(mt -> mt.field("name").query(query.getKey())));
+        }
+        // 2. 品牌过滤
+        if (StrUtil.isNotBlank(query.getBrand())) {
+            bool.filter(f -> f.term(t -> t.field("brand").value(query.getBrand())));
+        }
+        // 3. 分类过滤
+        if (StrUtil.isNotBlank(query.getCategory())) {
+            bool.filter(f -> f.term(t -> t.field("category").value(query.getCategory())));
+        }
+        // 4. 价格过滤
+        if (query.getMinPrice() != null || query.getMaxPrice() != null) {
+            bool.filter(f -> f.range(r -> {
+                r.field("price");
+                if (query.getMinPrice() != null) {
+                    r.gte(JsonData.of(query.getMinPrice()));
+                }
+                if (query.getMaxPrice() != null) {
+                    r.lte(JsonData.of(query.getMaxPrice()));
+                }
+                return r;
+            }));
+        }
+        return bool.build();
+    }
+
+    /**
+     * 在过滤条件外包一层 function_score，广告商品算分加权
+     */
+    private Query buildScoredQuery(ItemPageQuery query) {
+        BoolQuery bool = buildBoolQuery(query);
+        return Query.of(q -> q.functionScore(fs -> fs
+                .query(bq -> bq.bool(bool))
+                .functions(fn -> fn
+                        .filter(f -> f.term(t -> t.field("isAD").value(FieldValue.TRUE)))
+                        .weight(searchProperties.getAdBoost().doubleValue())
+                )
+                .boostMode(FunctionBoostMode.Multiply)
+        ));
+    }
+
+    private List<SortOptions> buildSorts(ItemPageQuery query) {
+        List<SortOptions> sorts = new ArrayList<>(3);
+        SortOrder order = Boolean.FALSE.equals(query.getIsAsc()) ? SortOrder.Desc : SortOrder.Asc;
+        // 1. 前端指定了排序字段
+        if (!query.sortedByDefault()) {
+            String field = StrUtil.toCamelCase(query.getSortBy());
+            sorts.add(SortOptions.of(s -> s.field(f -> f.field(field).order(order))));
+        } else if (StrUtil.isNotBlank(query.getKey())) {
+            // 2. 有关键字时按相关度排序，相关度相同再按更新时间
+            sorts.add(SortOptions.of(s -> s.score(sc -> sc.order(SortOrder.Desc))));
+        }
+        sorts.add(SortOptions.of(s -> s.field(f -> f.field("updateTime").order(SortOrder.Desc).missing("_last"))));
+        // 3. 最后按 id 排序，保证排序值唯一，search_after 翻页才不会漏数据
+        sorts.add(SortOptions.of(s -> s.field(f -> f.field("id").order(SortOrder.Desc))));
+        return sorts;
+    }
+
+    private CursorPageDTO<ItemDTO> searchByDb(ItemPageQuery query) {
+        // 分页查询，传了游标时按游标翻页
+        LambdaQueryWrapper<Item> wrapper = new LambdaQueryWrapper<Item>()
+                .like(StrUtil.isNotBlank(query.getKey()), Item::getName, query.getKey())
+                .eq(StrUtil.isNotBlank(query.getBrand()), Item::getBrand, query.getBrand())
+                .eq(StrUtil.isNotBlank(query.getCategory()), Item::getCategory, query.getCategory())
+                .eq(Item::getStatus, 1)
+                .between(query.getMaxPrice() != null, Item::getPrice, query.getMinPrice(), query.getMaxPrice());
+        return itemService.queryItemByPage(query, wrapper);
+    }
+}
@@ -0,0 +1,61 @@
+package com.hmall.item.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+import com.hmall.common.exception.BadRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 翻页游标的编解码，游标内容为游标类型和最后一条数据的排序字段值，序列化为 JSON 数组后再做 URL 安全的 Base64 编码。
+ * ES 和 MySQL 的排序字段不同，游标只能在生成它的查询方式中使用
+ */
+public class CursorUtils {
+
+    /**
+     * MySQL 查询生成的游标，排序值为 (update_time, id)
+     */
+    public static final String TYPE_DB = "db";
+    /**
+     * ES 查询生成的游标，排序值为 search_after 的参数
+     */
+    public static final String TYPE_ES = "es";
+
+    public static String encode(String type, List<?> values) {
+        List<Object> list = new ArrayList<>(values.size() + 1);
+        list.add(type);
+        list.addAll(values);
+        return Base64.encodeUrlSafe(JSONUtil.toJsonStr(list));
+    }
+
+    /**
+     * 解码游标，返回排序字段值，游标格式错误或者类型不符时抛出 BadRequestException
+     */
+    public static JSONArray decode(String cursor, String type) {
+        JSONArray array;
+        try {
+            array = JSONUtil.parseArray(Base64.decodeStr(cursor));
+        } catch (Exception e) {
+            throw new BadRequestException("翻页游标格式错误");
+        }
+        if (array.isEmpty() || !type.equals(array.getStr(0))) {
+            throw new BadRequestException("翻页游标已失效，请从第一页重新查询");
+        }
+        array.remove(0);
+        return array;
+    }
+
+    /**
+     * 游标是否由指定的查询方式生成
+     */
+    public static boolean isType(String cursor, String type) {
+        try {
+            JSONArray array = JSONUtil.parseArray(Base64.decodeStr(cursor));
+            return !array.isEmpty() && type.equals(array.getStr(0));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
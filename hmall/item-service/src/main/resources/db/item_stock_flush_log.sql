@@ -0,0 +1,7 @@
+-- 热点商品扣减量回写数据库的批次记录，与回写在同一个本地事务中写入，同一批次重复回写时直接跳过
+CREATE TABLE IF NOT EXISTS `item_stock_flush_log` (
+    `batch_id`    BIGINT   NOT NULL COMMENT '回写批次号',
+    `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`batch_id`),
+    KEY `idx_create_time` (`create_time`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '热点库存回写批次';
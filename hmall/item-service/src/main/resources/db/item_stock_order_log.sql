@@ -0,0 +1,10 @@
+-- 按订单记录库存的扣减和归还，与扣减、归还在同一个本地事务中写入。
+-- 同一个订单的重复扣减直接返回成功，重复归还直接跳过；
+-- 没有扣减过的订单被归还时记录为已归还，之后迟到的扣减请求直接失败，调用方可以放心补偿结果未知的扣减
+CREATE TABLE IF NOT EXISTS `item_stock_order_log` (
+    `order_id`    BIGINT   NOT NULL COMMENT '订单id',
+    `status`      TINYINT  NOT NULL COMMENT '1-已扣减，2-已归还',
+    `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`order_id`),
+    KEY `idx_create_time` (`create_time`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '订单库存记录';
@@ -0,0 +1,3 @@
+-- 已有环境升级：库存归还记录合并到 item_stock_order_log，先执行 item_stock_order_log.sql 再执行本脚本。
+-- 升级前扣减的订单没有扣减记录，归还时会被当作没有扣减过而跳过，升级前应等待未支付的订单处理完
+DROP TABLE IF EXISTS `item_stock_restore_log`;
@@ -0,0 +1,2 @@
+-- 商品分页默认按 (update_time, id) 倒序，游标翻页按 (update_time, id) 比较，需要联合索引避免全表排序
+ALTER TABLE `item` ADD INDEX `idx_update_time_id` (`update_time`, `id`);
@@ -0,0 +1,10 @@
+-- 把累计的扣减量原子地转成一个待回写的批次，多个实例同时执行时只有一个能取到数据
+-- KEYS[1]: 累计的扣减量 hash，KEYS[2]: 新批次的 hash，KEYS[3]: 未完成批次的批次号集合
+-- ARGV[1]: 批次号
+-- 返回 1 表示生成了新批次，0 表示没有需要回写的扣减量
+if redis.call('exists', KEYS[1]) == 0 then
+    return 0
+end
+redis.call('rename', KEYS[1], KEYS[2])
+redis.call('sadd', KEYS[3], ARGV[1])
+return 1
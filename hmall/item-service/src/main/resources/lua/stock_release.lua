@@ -0,0 +1,10 @@
+-- 释放热点商品的预扣库存，同时冲减待回写数据库的扣减量
+-- KEYS 与 ARGV 的格式同 stock_reserve.lua
+local n = #KEYS - 1
+for i = 1, n do
+    if redis.call('exists', KEYS[i + 1]) == 1 then
+        redis.call('incrby', KEYS[i + 1], ARGV[2 * i])
+    end
+    redis.call('hincrby', KEYS[1], ARGV[2 * i - 1], -tonumber(ARGV[2 * i]))
+end
+return 0
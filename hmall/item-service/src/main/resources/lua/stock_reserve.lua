@@ -0,0 +1,19 @@
+-- 热点商品库存预扣：全部商品库存充足时才一起扣减，同时累加待回写数据库的扣减量
+-- KEYS[1]: 待回写的扣减量 hash，KEYS[2..n+1]: 各商品的库存 key
+-- ARGV: 依次为各商品的 id、扣减数量
+-- 返回 0 表示成功，否则返回失败的商品序号（从 1 开始），库存未加载时为负数
+local n = #KEYS - 1
+for i = 1, n do
+    local stock = redis.call('get', KEYS[i + 1])
+    if not stock then
+        return -i
+    end
+    if tonumber(stock) < tonumber(ARGV[2 * i]) then
+        return i
+    end
+end
+for i = 1, n do
+    redis.call('decrby', KEYS[i + 1], ARGV[2 * i])
+    redis.call('hincrby', KEYS[1], ARGV[2 * i - 1], ARGV[2 * i])
+end
+return 0
@@ -0,0 +1,12 @@
+-- 修改热点商品的库存，Redis 中的库存以新值为准，新旧库存的差值计入待回写数据库的扣减量
+-- KEYS[1]: 待回写的扣减量 hash，KEYS[2]: 商品的库存 key
+-- ARGV[1]: 商品id，ARGV[2]: 新的库存
+-- 返回 1 表示已修改，0 表示库存尚未加载到 Redis
+local stock = redis.call('get', KEYS[2])
+if not stock then
+    return 0
+end
+local delta = tonumber(ARGV[2]) - tonumber(stock)
+redis.call('set', KEYS[2], ARGV[2])
+redis.call('hincrby', KEYS[1], ARGV[1], -delta)
+return 1
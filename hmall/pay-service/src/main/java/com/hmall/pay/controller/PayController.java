@@ -59,4 +59,11 @@ public class PayController {
         return BeanUtils.copyBean(payOrder, PayOrderDTO.class);
     }
 
+    @Operation(summary = "根据业务订单id批量查询支付单")
+    @PostMapping("/biz/query")
+    public List<PayOrderDTO> queryPayOrdersByBizOrderNos(@RequestBody List<Long> ids){
+        List<PayOrder> payOrders = payOrderService.lambdaQuery().in(PayOrder::getBizOrderNo, ids).list();
+        return BeanUtils.copyList(payOrders, PayOrderDTO.class);
+    }
+
 }
@@ -0,0 +1,111 @@
+package com.hmall.trade.config;
+
+import com.hmall.trade.constants.MQConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class MqListenerConfig {
+
+    /**
+     * 批量消费的监听器容器：一次取出多条消息交给监听器，监听器返回后一次确认整批消息。
+     * 抛出异常时在本地按间隔重试整批消息，次数用完后逐条转发到死信队列并确认，不会重新投递后反复失败
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            RabbitTemplate rabbitTemplate, TradeProperties tradeProperties) {
+        TradeProperties.Timeout timeout = tradeProperties.getTimeout();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        // 1. 沿用 spring.rabbitmq.listener 的配置和消息转换器
+        configurer.configure(factory, connectionFactory);
+        // 2. 开启批量消费，预取数量不能小于每批的数量，否则凑不满一批
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(timeout.getBatchSize());
+        factory.setPrefetchCount(timeout.getBatchSize());
+        factory.setReceiveTimeout(timeout.getReceiveTimeout().toMillis());
+        // 3. 有限次数的重试，失败的整批消息转发到死信队列
+        MessageRecoverer republish = new RepublishMessageRecoverer(rabbitTemplate,
+                MQConstants.ERROR_EXCHANGE_NAME, MQConstants.DELAY_ORDER_ERROR_KEY);
+        MessageBatchRecoverer recoverer = (messages, cause) -> {
+            log.error("批量消费重试{}次仍然失败，{}条消息转入死信队列", timeout.getMaxAttempts(), messages.size(), cause);
+            messages.forEach(message -> republish.recover(message, cause));
+        };
+        long interval = timeout.getRetryInterval().toMillis();
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(timeout.getMaxAttempts())
+                .backOffOptions(interval, 2.0, interval * 10)
+                .recoverer(recoverer)
+                .build());
+        return factory;
+    }
+
+    /**
+     * 异步下单的监听器容器：监听器抛出异常时在本地按间隔重试，次数用完后转发到死信队列并确认，
+     * 不会在数据库或下游服务不可用时反复重新投递
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory asyncOrderListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            RabbitTemplate rabbitTemplate, TradeProperties tradeProperties) {
+        TradeProperties.AsyncOrder asyncOrder = tradeProperties.getAsyncOrder();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        // 1. 沿用 spring.rabbitmq.listener 的配置和消息转换器
+        configurer.configure(factory, connectionFactory);
+        // 2. 有限次数的重试，失败的消息转发到死信队列
+        MessageRecoverer republish = new RepublishMessageRecoverer(rabbitTemplate,
+                MQConstants.ERROR_EXCHANGE_NAME, MQConstants.ORDER_CREATE_ERROR_KEY);
+        MessageRecoverer recoverer = (message, cause) -> {
+            log.error("异步下单消息重试{}次仍然失败，转入死信队列", asyncOrder.getMaxAttempts(), cause);
+            republish.recover(message, cause);
+        };
+        long interval = asyncOrder.getRetryInterval().toMillis();
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(asyncOrder.getMaxAttempts())
+                .backOffOptions(interval, 2.0, interval * 10)
+                .recoverer(recoverer)
+                .build());
+        return factory;
+    }
+
+    @Bean
+    public DirectExchange errorExchange() {
+        return new DirectExchange(MQConstants.ERROR_EXCHANGE_NAME);
+    }
+
+    @Bean
+    public Queue delayOrderErrorQueue() {
+        return QueueBuilder.durable(MQConstants.DELAY_ORDER_ERROR_QUEUE_NAME).build();
+    }
+
+    @Bean
+    public Binding delayOrderErrorBinding(Queue delayOrderErrorQueue, DirectExchange errorExchange) {
+        return BindingBuilder.bind(delayOrderErrorQueue).to(errorExchange).with(MQConstants.DELAY_ORDER_ERROR_KEY);
+    }
+
+    @Bean
+    public Queue orderCreateErrorQueue() {
+        return QueueBuilder.durable(MQConstants.ORDER_CREATE_ERROR_QUEUE_NAME).build();
+    }
+
+    @Bean
+    public Binding orderCreateErrorBinding(Queue orderCreateErrorQueue, DirectExchange errorExchange) {
+        return BindingBuilder.bind(orderCreateErrorQueue).to(errorExchange).with(MQConstants.ORDER_CREATE_ERROR_KEY);
+    }
+}
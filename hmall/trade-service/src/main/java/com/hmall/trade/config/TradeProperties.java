@@ -0,0 +1,147 @@
+package com.hmall.trade.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "hm.trade")
+public class TradeProperties {
+    /**
+     * 异步下单票据的保留时间，超过后只能通过订单id查询
+     */
+    private Duration ticketTtl = Duration.ofHours(1);
+    /**
+     * 下单后多久未支付就取消订单
+     */
+    private Duration payTimeout = Duration.ofSeconds(10);
+    /**
+     * 下单 saga 的配置
+     */
+    private Saga saga = new Saga();
+    /**
+     * 超时订单兜底清理的配置
+     */
+    private Sweeper sweeper = new Sweeper();
+    /**
+     * 支付超时检查的配置
+     */
+    private Timeout timeout = new Timeout();
+    /**
+     * 已取消订单重新归还库存的配置
+     */
+    private StockRestore stockRestore = new StockRestore();
+    /**
+     * 异步下单消费的配置
+     */
+    private AsyncOrder asyncOrder = new AsyncOrder();
+
+    @Data
+    public static class Saga {
+        /**
+         * 步骤失败后的最大重试次数，超过后开始补偿。补偿步骤会一直重试
+         */
+        private Integer maxRetries = 3;
+        /**
+         * 重试间隔，每次重试按次数递增
+         */
+        private Duration retryDelay = Duration.ofSeconds(1);
+        /**
+         * 执行一个步骤时占用 saga 的时间，需要长于一次远程调用的超时时间，
+         * 执行步骤的实例崩溃后，到期才能被其它消费者重新执行
+         */
+        private Duration lease = Duration.ofMinutes(1);
+        /**
+         * 超过这个时间没有推进的执行中、补偿中的 saga 由清理任务重新投递，需要长于最长的重试间隔
+         */
+        private Duration staleAfter = Duration.ofMinutes(5);
+        /**
+         * 清理任务每次重新投递的 saga 数量
+         */
+        private Integer sweepBatchSize = 200;
+    }
+
+    @Data
+    public static class Sweeper {
+        /**
+         * 是否定时取消超时未支付的订单，用于延迟消息丢失的情况
+         */
+        private Boolean enabled = true;
+        /**
+         * 超过支付超时时间多久后由清理任务取消，正常情况下订单已经被延迟消息取消
+         */
+        private Duration grace = Duration.ofMinutes(1);
+        /**
+         * 每批取消的订单数量
+         */
+        private Integer batchSize = 200;
+        /**
+         * 每批之间的停顿时间
+         */
+        private Duration pause = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class StockRestore {
+        /**
+         * 取消订单多久后仍未归还库存时由定时任务重新归还，正常情况下取消后已经立即归还
+         */
+        private Duration delay = Duration.ofMinutes(1);
+        /**
+         * 每批重新归还的订单数量
+         */
+        private Integer batchSize = 200;
+    }
+
+    @Data
+    public static class AsyncOrder {
+        /**
+         * 一条下单消息的最大处理次数，数据库暂时不可用等异常用完次数后转入死信队列，不再重新投递
+         */
+        private Integer maxAttempts = 5;
+        /**
+         * 处理失败后第一次重试的间隔，之后每次翻倍
+         */
+        private Duration retryInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Timeout {
+        /**
+         * 支付超时检查的实现：delay-message 使用 RabbitMQ 延迟消息，timing-wheel 使用本地的分层时间轮
+         */
+        private String scheduler = "delay-message";
+        /**
+         * 时间轮每一格的时间跨度，也是超时检查的精度
+         */
+        private Duration tick = Duration.ofMillis(100);
+        /**
+         * 时间轮每一层的格数，必须是 2 的幂
+         */
+        private Integer wheelSize = 64;
+        /**
+         * 时间轮的层数，能容纳的最长延迟为 tick * wheelSize ^ levels
+         */
+        private Integer levels = 4;
+        /**
+         * 每批检查的订单数量，批量消费延迟消息时每批最多取出的消息数量，
+         * 时间轮启动时也按这个数量分批从订单表加载未支付的订单
+         */
+        private Integer batchSize = 500;
+        /**
+         * 批量消费延迟消息时，等待凑满一批的最长时间
+         */
+        private Duration receiveTimeout = Duration.ofMillis(200);
+        /**
+         * 批量消费时一批消息的最大处理次数，用完后整批转入死信队列，不再重新投递
+         */
+        private Integer maxAttempts = 3;
+        /**
+         * 批量消费失败后第一次重试的间隔，之后每次翻倍
+         */
+        private Duration retryInterval = Duration.ofSeconds(1);
+    }
+}
@@ -4,4 +4,30 @@ public interface MQConstants {
     String DELAY_EXCHANGE_NAME = "trade.delay.direct";
     String DELAY_ORDER_QUEUE_NAME = "trade.delay.order.queue";
     String DELAY_ORDER_KEY = "delay.order.query";
+    /**
+     * 多次检查仍然失败的支付超时消息，消息体为订单id。订单本身由超时订单清理任务兜底取消
+     */
+    String ERROR_EXCHANGE_NAME = "trade.error.direct";
+    String DELAY_ORDER_ERROR_QUEUE_NAME = "trade.delay.order.error.queue";
+    String DELAY_ORDER_ERROR_KEY = "delay.order.error";
+    /**
+     * 异步下单，消息体为 AsyncOrderDTO
+     */
+    String ORDER_EXCHANGE_NAME = "trade.direct";
+    String ORDER_CREATE_QUEUE_NAME = "trade.order.create.queue";
+    String ORDER_CREATE_KEY = "order.create";
+    /**
+     * 多次重试仍然无法处理的异步下单消息，消息体为 AsyncOrderDTO，预留的库存和票据需要人工处理
+     */
+    String ORDER_CREATE_ERROR_QUEUE_NAME = "trade.order.create.error.queue";
+    String ORDER_CREATE_ERROR_KEY = "order.create.error";
+    /**
+     * 推进下单 saga，消息体为 saga id
+     */
+    String ORDER_SAGA_QUEUE_NAME = "trade.order.saga.queue";
+    String ORDER_SAGA_KEY = "order.saga";
+    /**
+     * saga 步骤失败后延迟重试
+     */
+    String DELAY_ORDER_SAGA_KEY = "delay.order.saga";
 }
@@ -2,6 +2,7 @@ package com.hmall.trade.controller;
 
 import com.hmall.common.utils.BeanUtils;
 import com.hmall.trade.domain.dto.OrderFormDTO;
+import com.hmall.trade.domain.vo.OrderTicketVO;
 import com.hmall.trade.domain.vo.OrderVO;
 import com.hmall.trade.service.IOrderService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -32,6 +33,21 @@ public class OrderController {
         return orderService.createOrder(orderFormDTO);
     }
 
+    @Operation(summary = "异步创建订单", description = "预留库存后立即返回票据id，订单在后台写入，通过票据查询下单结果")
+    @PostMapping("/async")
+    public Long submitOrderAsync(@RequestBody OrderFormDTO orderFormDTO){
+        return orderService.submitOrderAsync(orderFormDTO);
+    }
+
+    @Operation(summary = "查询异步下单结果")
+    @Parameters({
+        @Parameter(name = "ticketId", description = "异步下单返回的票据id", in = ParameterIn.PATH)
+    })
+    @GetMapping("/async/{ticketId}")
+    public OrderTicketVO queryOrderTicket(@PathVariable("ticketId") Long ticketId) {
+        return orderService.queryOrderTicket(ticketId);
+    }
+
     @Operation(summary = "标记订单已支付")
     @Parameters({
         @Parameter(name = "orderId", description = "订单id", in = ParameterIn.PATH)
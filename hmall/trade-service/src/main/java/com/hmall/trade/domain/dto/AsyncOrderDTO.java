@@ -0,0 +1,28 @@
+package com.hmall.trade.domain.dto;
+
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
+import com.hmall.api.domain.dto.OrderDetailDTO;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 异步下单消息，库存已经预留，消费者只负责写入订单和后续步骤
+ */
+@Data
+public class AsyncOrderDTO {
+    /**
+     * 订单id，同时也是返回给前端的票据id
+     */
+    private Long orderId;
+    private Long userId;
+    private Integer paymentType;
+    /**
+     * 下单时的商品快照
+     */
+    private List<ItemSnapshotDTO> items;
+    /**
+     * 每个商品的购买数量，已经预留的库存
+     */
+    private List<OrderDetailDTO> details;
+}
@@ -1,5 +1,6 @@
 package com.hmall.trade.domain.dto;
 
+import com.hmall.api.domain.dto.CheckoutQuoteDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
@@ -14,4 +15,6 @@ public class OrderFormDTO {
     private Integer paymentType;
     @Schema(description = "下单商品列表")
     private List<OrderDetailDTO> details;
+    @Schema(description = "购物车结算前校验返回的报价单，提交后以报价单中的商品为准，不再查询商品")
+    private CheckoutQuoteDTO quote;
 }
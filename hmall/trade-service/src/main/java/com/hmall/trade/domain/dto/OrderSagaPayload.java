@@ -0,0 +1,24 @@
+package com.hmall.trade.domain.dto;
+
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
+import com.hmall.api.domain.dto.OrderDetailDTO;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 下单 saga 执行和补偿所需的数据，以 JSON 保存在 order_saga 表中
+ */
+@Data
+public class OrderSagaPayload {
+    private Long userId;
+    private Integer paymentType;
+    /**
+     * 下单时的商品快照，恢复购物车时也使用这些数据
+     */
+    private List<ItemSnapshotDTO> items;
+    /**
+     * 每个商品的购买数量
+     */
+    private List<OrderDetailDTO> details;
+}
@@ -0,0 +1,61 @@
+package com.hmall.trade.domain.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 下单 saga 的状态，表结构见 resources/db/order_saga.sql，再执行 order_saga_lease_payload.sql 升级
+ */
+@Data
+@Accessors(chain = true)
+@TableName("order_saga")
+public class OrderSaga implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * saga id，即订单id
+     */
+    @TableId(value = "id", type = IdType.INPUT)
+    private Long id;
+
+    /**
+     * 下单用户id
+     */
+    private Long userId;
+
+    /**
+     * 状态，见 SagaStatus
+     */
+    private Integer status;
+
+    /**
+     * 执行中为下一个要执行的步骤，补偿中为下一个要补偿的步骤，见 OrderSagaStep
+     */
+    private Integer step;
+
+    /**
+     * 当前步骤的重试次数
+     */
+    private Integer retryCount;
+
+    /**
+     * 当前步骤被占用到的时间，为空表示没有被占用
+     */
+    private LocalDateTime leaseUntil;
+
+    /**
+     * 下单数据，OrderSagaPayload 的 JSON
+     */
+    private String payload;
+
+    private LocalDateTime createTime;
+
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,29 @@
+package com.hmall.trade.domain.po;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 待归还库存的订单，表结构见 resources/db/order_stock_restore.sql，再执行 order_stock_restore_details.sql 升级
+ */
+@Data
+@Accessors(chain = true)
+public class OrderStockRestore implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 订单id，异步下单时为票据id
+     */
+    private Long orderId;
+
+    /**
+     * 没有写入订单时待归还的商品和数量，JSON
+     */
+    private String details;
+
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,18 @@
+package com.hmall.trade.domain.vo;
+
+import com.hmall.trade.enums.OrderTicketStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "异步下单票据")
+public class OrderTicketVO {
+    @Schema(description = "票据id")
+    private Long ticketId;
+    @Schema(description = "下单状态，PENDING-排队中，CREATED-下单成功，FAILED-下单失败")
+    private OrderTicketStatus status;
+    @Schema(description = "订单id，下单成功后返回")
+    private Long orderId;
+    @Schema(description = "失败原因")
+    private String reason;
+}
@@ -0,0 +1,73 @@
+package com.hmall.trade.enums;
+
+import lombok.Getter;
+
+/**
+ * 下单 saga 的步骤，按 value 顺序执行，失败时按相反顺序执行补偿，没有补偿的步骤直接跳过
+ */
+@Getter
+public enum OrderSagaStep {
+    RESERVE_STOCK(1, "预留库存", "归还库存", false),
+    CREATE_ORDER(2, "创建订单", "取消订单", false),
+    /**
+     * 购物车没有清理干净不影响订单，失败后一直向前重试，不触发补偿，也不需要补偿
+     */
+    CLEAR_CART(3, "清理购物车", null, true),
+    SCHEDULE_TIMEOUT(4, "发送支付超时检查", null, false),
+    ;
+    private final int value;
+    private final String desc;
+    /**
+     * 补偿的描述，为 null 表示这个步骤没有补偿
+     */
+    private final String compensationDesc;
+    /**
+     * 失败后是否一直向前重试，不触发补偿
+     */
+    private final boolean retryForward;
+
+    OrderSagaStep(int value, String desc, String compensationDesc, boolean retryForward) {
+        this.value = value;
+        this.desc = desc;
+        this.compensationDesc = compensationDesc;
+        this.retryForward = retryForward;
+    }
+
+    /**
+     * 下一个步骤，已经是最后一步时返回 null
+     */
+    public OrderSagaStep next() {
+        return ordinal() + 1 < values().length ? values()[ordinal() + 1] : null;
+    }
+
+    /**
+     * 上一个步骤，已经是第一步时返回 null
+     */
+    public OrderSagaStep previous() {
+        return ordinal() > 0 ? values()[ordinal() - 1] : null;
+    }
+
+    /**
+     * 之前最近一个有补偿的步骤，没有时返回 null
+     */
+    public OrderSagaStep previousCompensable() {
+        OrderSagaStep step = previous();
+        while (step != null && step.compensationDesc == null) {
+            step = step.previous();
+        }
+        return step;
+    }
+
+    public static OrderSagaStep last() {
+        return values()[values().length - 1];
+    }
+
+    public static OrderSagaStep of(Integer value) {
+        for (OrderSagaStep step : values()) {
+            if (value != null && step.value == value) {
+                return step;
+            }
+        }
+        throw new IllegalArgumentException("未知的 saga 步骤：" + value);
+    }
+}
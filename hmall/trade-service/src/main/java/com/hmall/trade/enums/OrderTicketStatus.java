@@ -0,0 +1,18 @@
+package com.hmall.trade.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum OrderTicketStatus {
+    PENDING(1, "排队中"),
+    CREATED(2, "下单成功"),
+    FAILED(3, "下单失败"),
+    ;
+    private final int value;
+    private final String desc;
+
+    OrderTicketStatus(int value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,29 @@
+package com.hmall.trade.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum SagaStatus {
+    RUNNING(1, "执行中"),
+    COMPENSATING(2, "补偿中"),
+    DONE(3, "已完成"),
+    COMPENSATED(4, "已补偿"),
+    FAILED(5, "失败"),
+    ;
+    private final int value;
+    private final String desc;
+
+    SagaStatus(int value, String desc) {
+        this.value = value;
+        this.desc = desc;
+    }
+
+    public static SagaStatus of(Integer value) {
+        for (SagaStatus status : values()) {
+            if (value != null && status.value == value) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("未知的 saga 状态：" + value);
+    }
+}
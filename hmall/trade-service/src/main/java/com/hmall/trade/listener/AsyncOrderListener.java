@@ -0,0 +1,57 @@
+package com.hmall.trade.listener;
+
+import com.hmall.trade.constants.MQConstants;
+import com.hmall.trade.domain.dto.AsyncOrderDTO;
+import com.hmall.trade.service.IOrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AsyncOrderListener {
+
+    private final IOrderService orderService;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = MQConstants.ORDER_CREATE_QUEUE_NAME, durable = "true"),
+            exchange = @Exchange(name = MQConstants.ORDER_EXCHANGE_NAME, type = ExchangeTypes.DIRECT),
+            key = MQConstants.ORDER_CREATE_KEY
+    ), containerFactory = "asyncOrderListenerContainerFactory")
+    public void listenAsyncOrder(AsyncOrderDTO asyncOrder) {
+        // 1. 写入订单，重复消息不会重复写入
+        try {
+            orderService.persistAsyncOrder(asyncOrder);
+        } catch (DuplicateKeyException e) {
+            // 重复消息同时写入，检查订单是否存在时没有加锁，主键冲突说明订单已被另一方写入
+            log.info("异步下单的订单已写入，订单id：{}", asyncOrder.getOrderId());
+        } catch (DataIntegrityViolationException e) {
+            // 2. 数据不合法，重试也无法写入，归还预留的库存，标记下单失败
+            failAsyncOrder(asyncOrder, e);
+            return;
+        } catch (DataAccessException | TransactionException e) {
+            // 数据库暂时不可用、死锁等，抛出异常重试，次数用完后转入死信队列
+            throw e;
+        } catch (RuntimeException e) {
+            failAsyncOrder(asyncOrder, e);
+            return;
+        }
+        // 3. 订单已写入，执行后续步骤，重复消息时再次执行也不影响结果
+        orderService.afterAsyncOrderCreated(asyncOrder);
+    }
+
+    private void failAsyncOrder(AsyncOrderDTO asyncOrder, Exception e) {
+        log.error("异步下单写入订单失败，订单id：{}", asyncOrder.getOrderId(), e);
+        orderService.failAsyncOrder(asyncOrder, "下单失败，请稍后重试");
+    }
+}
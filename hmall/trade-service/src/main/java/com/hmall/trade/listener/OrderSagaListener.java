@@ -0,0 +1,37 @@
+package com.hmall.trade.listener;
+
+import com.hmall.trade.constants.MQConstants;
+import com.hmall.trade.saga.OrderSagaOrchestrator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class OrderSagaListener {
+
+    private final OrderSagaOrchestrator orderSagaOrchestrator;
+
+    /**
+     * 推进下单 saga，失败重试的消息经过延迟交换机投递到同一个队列
+     */
+    @RabbitListener(bindings = {
+            @QueueBinding(
+                    value = @Queue(name = MQConstants.ORDER_SAGA_QUEUE_NAME, durable = "true"),
+                    exchange = @Exchange(name = MQConstants.ORDER_EXCHANGE_NAME, type = ExchangeTypes.DIRECT),
+                    key = MQConstants.ORDER_SAGA_KEY
+            ),
+            @QueueBinding(
+                    value = @Queue(name = MQConstants.ORDER_SAGA_QUEUE_NAME, durable = "true"),
+                    exchange = @Exchange(name = MQConstants.DELAY_EXCHANGE_NAME, delayed = "true", type = ExchangeTypes.DIRECT),
+                    key = MQConstants.DELAY_ORDER_SAGA_KEY
+            )
+    })
+    public void listenOrderSaga(Long sagaId) {
+        orderSagaOrchestrator.handle(sagaId);
+    }
+}
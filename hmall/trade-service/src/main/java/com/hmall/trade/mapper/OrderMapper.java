@@ -2,7 +2,55 @@ package com.hmall.trade.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.hmall.trade.domain.vo.Order;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 public interface OrderMapper extends BaseMapper<Order> {
 
+    /**
+     * 只有未支付的订单才能取消，影响行数为 0 说明订单已支付或已取消
+     */
+    @Update("UPDATE `order` SET status = 5, close_time = NOW(), update_time = NOW() WHERE id = #{id} AND status = 1")
+    int cancelUnpaid(@Param("id") Long id);
+
+    /**
+     * 锁定仍未支付的订单，返回锁定的订单id，需要在事务中调用
+     */
+    @Select("<script>SELECT id FROM `order` WHERE status = 1 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach> FOR UPDATE" +
+            "</script>")
+    List<Long> selectUnpaidIdsForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 一条语句批量取消未支付的订单
+     */
+    @Update("<script>UPDATE `order` SET status = 5, close_time = NOW(), update_time = NOW() WHERE status = 1 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int batchCancelUnpaid(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 一条语句批量把未支付的订单标记为已支付
+     */
+    @Update("<script>UPDATE `order` SET status = 2, pay_time = NOW(), update_time = NOW() WHERE status = 1 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int batchMarkPaid(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按 id 顺序分页查询超时未支付的订单，只返回 id
+     */
+    @Select("SELECT id FROM `order` WHERE status = 1 AND id > #{lastId} AND create_time < #{deadline} ORDER BY id LIMIT #{limit}")
+    List<Long> selectExpiredUnpaidIds(@Param("lastId") Long lastId, @Param("deadline") LocalDateTime deadline, @Param("limit") int limit);
+
+    /**
+     * 按 id 顺序分页查询未支付的订单，只返回 id 和创建时间
+     */
+    @Select("SELECT id, create_time FROM `order` WHERE status = 1 AND id > #{lastId} ORDER BY id LIMIT #{limit}")
+    List<Order> selectUnpaidOrders(@Param("lastId") Long lastId, @Param("limit") int limit);
 }
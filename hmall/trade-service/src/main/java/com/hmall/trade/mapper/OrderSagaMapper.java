@@ -0,0 +1,53 @@
+package com.hmall.trade.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmall.trade.domain.po.OrderSaga;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderSagaMapper extends BaseMapper<OrderSaga> {
+
+    /**
+     * 占用指定状态和步骤的 saga，占用期间其它消费者无法执行这个步骤。
+     * 状态或步骤已被修改、或者被其它消费者占用且未到期时影响行数为 0
+     */
+    @Update("UPDATE order_saga SET lease_until = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND), update_time = NOW() " +
+            "WHERE id = #{id} AND status = #{status} AND step = #{step} AND (lease_until IS NULL OR lease_until < NOW())")
+    int claim(@Param("id") Long id, @Param("status") int status, @Param("step") int step,
+              @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * 从指定的状态和步骤推进 saga 并释放占用，状态或步骤已被其它消费者修改时影响行数为 0
+     */
+    @Update("UPDATE order_saga SET status = #{toStatus}, step = #{toStep}, retry_count = 0, lease_until = NULL, update_time = NOW() " +
+            "WHERE id = #{id} AND status = #{fromStatus} AND step = #{fromStep}")
+    int transit(@Param("id") Long id,
+                @Param("fromStatus") int fromStatus, @Param("fromStep") int fromStep,
+                @Param("toStatus") int toStatus, @Param("toStep") int toStep);
+
+    /**
+     * 当前步骤执行失败，增加重试次数并释放占用，等待延迟重试。状态或步骤已被修改时影响行数为 0
+     */
+    @Update("UPDATE order_saga SET retry_count = retry_count + 1, lease_until = NULL, update_time = NOW() " +
+            "WHERE id = #{id} AND status = #{status} AND step = #{step}")
+    int incrementRetry(@Param("id") Long id, @Param("status") int status, @Param("step") int step);
+
+    /**
+     * 查询长时间没有推进的 saga，例如推进消息丢失或者执行步骤的实例崩溃，使用索引 idx_status_update_time
+     */
+    @Select("SELECT id FROM order_saga WHERE status = #{status} AND update_time < #{deadline} ORDER BY update_time LIMIT #{limit}")
+    List<Long> selectStaleIds(@Param("status") int status, @Param("deadline") LocalDateTime deadline, @Param("limit") int limit);
+
+    /**
+     * 订单被超时取消时结束 saga，库存由取消订单的一方归还，补偿中的 saga 不受影响
+     */
+    @Update("<script>UPDATE order_saga SET status = 4, retry_count = 0, lease_until = NULL, update_time = NOW() WHERE status IN (1, 3) AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int markCompensated(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,50 @@
+package com.hmall.trade.mapper;
+
+import com.hmall.trade.domain.po.OrderStockRestore;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderStockRestoreMapper {
+
+    /**
+     * 记录待归还库存的订单，需要与取消订单在同一个事务中调用
+     */
+    @Insert("<script>INSERT IGNORE INTO order_stock_restore (order_id, create_time) VALUES " +
+            "<foreach collection='orderIds' item='id' separator=','>(#{id}, NOW())</foreach>" +
+            "</script>")
+    int insertIgnore(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * 记录没有写入订单、待归还库存的下单请求，同时记录要归还的商品和数量
+     */
+    @Insert("INSERT IGNORE INTO order_stock_restore (order_id, details, create_time) VALUES (#{orderId}, #{details}, NOW())")
+    int insertIgnoreWithDetails(@Param("orderId") Long orderId, @Param("details") String details);
+
+    /**
+     * 查询记录了商品和数量的待归还记录
+     */
+    @Select("<script>SELECT order_id, details FROM order_stock_restore WHERE details IS NOT NULL AND order_id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<OrderStockRestore> selectWithDetails(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * 查询早于指定时间、仍未归还库存的订单
+     */
+    @Select("SELECT order_id FROM order_stock_restore WHERE create_time < #{deadline} ORDER BY create_time LIMIT #{limit}")
+    List<Long> selectPendingIds(@Param("deadline") LocalDateTime deadline, @Param("limit") int limit);
+
+    /**
+     * 库存归还成功后删除记录
+     */
+    @Delete("<script>DELETE FROM order_stock_restore WHERE order_id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+}
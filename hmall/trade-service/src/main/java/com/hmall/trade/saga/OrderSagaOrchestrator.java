@@ -0,0 +1,362 @@
+package com.hmall.trade.saga;
+
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.hmall.api.client.CartClient;
+import com.hmall.api.client.ItemClient;
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
+import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.OrderStockRestoreDTO;
+import com.hmall.api.domain.dto.StockDeductResultDTO;
+import com.hmall.common.exception.BizIllegalException;
+import com.hmall.common.utils.UserContext;
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.constants.MQConstants;
+import com.hmall.trade.domain.dto.OrderSagaPayload;
+import com.hmall.trade.domain.po.OrderDetail;
+import com.hmall.trade.domain.po.OrderSaga;
+import com.hmall.trade.domain.vo.Order;
+import com.hmall.trade.enums.OrderSagaStep;
+import com.hmall.trade.enums.SagaStatus;
+import com.hmall.trade.mapper.OrderMapper;
+import com.hmall.trade.mapper.OrderSagaMapper;
+import com.hmall.trade.service.IOrderDetailService;
+import com.hmall.trade.timeout.OrderTimeoutScheduler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 下单 saga 的编排器，取代 Seata 全局事务。
+ * <p>
+ * 预留库存和创建订单在下单请求中同步执行，之后的步骤由消息驱动，每完成一步就把进度写入 order_saga 表。
+ * 步骤失败时延迟重试，超过次数后按相反顺序执行已完成步骤的补偿：取消订单、归还库存。
+ * 清理购物车不影响订单，失败后一直向前重试，不触发补偿。
+ * 订单被超时取消时由取消的一方归还库存并结束 saga，saga 补偿时只有自己取消了订单才继续归还库存。
+ * 预留库存按订单id 登记，调用超时等结果未知时直接补偿：库存服务已扣减时归还，没有扣减时登记为已归还，迟到的扣减不再执行。
+ * <p>
+ * 执行每个步骤前先按状态和步骤占用 saga，重复投递的消息无法同时执行同一个步骤；
+ * 占用到期前实例崩溃时步骤可能再次执行，远程调用都按订单id 幂等。推进消息丢失的 saga 由清理任务重新投递
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderSagaOrchestrator {
+
+    private final OrderSagaMapper sagaMapper;
+    private final OrderMapper orderMapper;
+    private final IOrderDetailService detailService;
+    private final ItemClient itemClient;
+    private final CartClient cartClient;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TradeProperties tradeProperties;
+    private final OrderTimeoutScheduler orderTimeoutScheduler;
+
+    /**
+     * 开始下单 saga，返回订单id
+     */
+    public Long start(OrderSagaPayload payload) {
+        // 1. 记录 saga，订单id 同时作为 saga id
+        Long orderId = IdWorker.getId();
+        OrderSaga saga = new OrderSaga()
+                .setId(orderId)
+                .setUserId(payload.getUserId())
+                .setStatus(SagaStatus.RUNNING.getValue())
+                .setStep(OrderSagaStep.RESERVE_STOCK.getValue())
+                .setRetryCount(0)
+                .setPayload(JSONUtil.toJsonStr(payload));
+        sagaMapper.insert(saga);
+        // 2. 按订单id 预留库存，调用失败时无法确认是否已扣减，按订单id 归还
+        List<StockDeductResultDTO> results;
+        try {
+            results = itemClient.deductStockChecked(orderId, payload.getDetails());
+        } catch (RuntimeException e) {
+            log.error("预留库存结果未知，开始补偿，订单id：{}", orderId, e);
+            sagaMapper.transit(orderId, SagaStatus.RUNNING.getValue(), OrderSagaStep.RESERVE_STOCK.getValue(),
+                    SagaStatus.COMPENSATING.getValue(), OrderSagaStep.RESERVE_STOCK.getValue());
+            tryDispatch(orderId);
+            throw new BizIllegalException("下单失败，请稍后重试", e);
+        }
+        // 库存不足时没有扣减任何商品，还没有需要补偿的步骤
+        try {
+            checkReserved(results, payload.getItems());
+        } catch (RuntimeException e) {
+            sagaMapper.transit(orderId, SagaStatus.RUNNING.getValue(), OrderSagaStep.RESERVE_STOCK.getValue(),
+                    SagaStatus.FAILED.getValue(), OrderSagaStep.RESERVE_STOCK.getValue());
+            throw e;
+        }
+        // 3. 在一个本地事务中写入订单并推进 saga，二者同时成功或失败
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                saveOrder(orderId, payload.getUserId(), payload.getPaymentType(), payload.getItems(), payload.getDetails());
+                if (sagaMapper.transit(orderId, SagaStatus.RUNNING.getValue(), OrderSagaStep.RESERVE_STOCK.getValue(),
+                        SagaStatus.RUNNING.getValue(), OrderSagaStep.CLEAR_CART.getValue()) == 0) {
+                    // 请求执行过久，清理任务已经开始补偿
+                    throw new BizIllegalException("下单 saga 已开始补偿");
+                }
+            });
+        } catch (RuntimeException e) {
+            // 订单没有写入，归还预留的库存
+            log.error("写入订单失败，开始补偿，订单id：{}", orderId, e);
+            sagaMapper.transit(orderId, SagaStatus.RUNNING.getValue(), OrderSagaStep.RESERVE_STOCK.getValue(),
+                    SagaStatus.COMPENSATING.getValue(), OrderSagaStep.RESERVE_STOCK.getValue());
+            tryDispatch(orderId);
+            throw new BizIllegalException("下单失败，请稍后重试", e);
+        }
+        // 4. 之后的步骤由消息驱动，订单已经写入，发送失败时由清理任务重新投递，不影响下单结果
+        tryDispatch(orderId);
+        return orderId;
+    }
+
+    /**
+     * 执行 saga 的下一个步骤或补偿，直到结束或失败
+     */
+    public void handle(Long sagaId) {
+        OrderSaga saga = sagaMapper.selectById(sagaId);
+        if (saga == null) {
+            return;
+        }
+        OrderSagaPayload payload = JSONUtil.toBean(saga.getPayload(), OrderSagaPayload.class);
+        // 调用其它服务时需要传递用户信息
+        UserContext.setUser(saga.getUserId());
+        try {
+            while (proceed(saga, payload)) {
+                // 继续执行下一步
+            }
+        } catch (Exception e) {
+            retry(saga, e);
+        } finally {
+            UserContext.removeUser();
+        }
+    }
+
+    /**
+     * 检查预留库存的结果，任意商品库存不足时不会扣减任何商品，抛出异常提示库存不足的商品
+     */
+    public void checkReserved(List<StockDeductResultDTO> results, List<ItemSnapshotDTO> items) {
+        for (StockDeductResultDTO result : results) {
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                continue;
+            }
+            String name = items.stream()
+                    .filter(item -> item.getId().equals(result.getItemId()))
+                    .map(ItemSnapshotDTO::getName)
+                    .findFirst()
+                    .orElse(String.valueOf(result.getItemId()));
+            throw new BizIllegalException("商品【" + name + "】库存不足，剩余库存：" +
+                    (result.getStock() == null ? 0 : result.getStock()));
+        }
+    }
+
+    /**
+     * 写入订单和订单详情，需要在事务中调用
+     */
+    public void saveOrder(Long orderId, Long userId, Integer paymentType,
+                          List<ItemSnapshotDTO> items, List<OrderDetailDTO> detailDTOS) {
+        Map<Long, Integer> itemNumMap = detailDTOS.stream()
+                .collect(Collectors.toMap(OrderDetailDTO::getItemId, OrderDetailDTO::getNum, Integer::sum));
+        // 1. 基于商品价格、购买数量计算商品总价
+        int total = 0;
+        for (ItemSnapshotDTO item : items) {
+            total += item.getPrice() * itemNumMap.get(item.getId());
+        }
+        // 2. 写入订单
+        Order order = new Order();
+        order.setId(orderId);
+        order.setTotalFee(total);
+        order.setPaymentType(paymentType);
+        order.setUserId(userId);
+        order.setStatus(1);
+        orderMapper.insert(order);
+        // 3. 写入订单详情
+        List<OrderDetail> details = new ArrayList<>(items.size());
+        for (ItemSnapshotDTO item : items) {
+            OrderDetail detail = new OrderDetail();
+            detail.setName(item.getName());
+            detail.setSpec(item.getSpec());
+            detail.setPrice(item.getPrice());
+            detail.setNum(itemNumMap.get(item.getId()));
+            detail.setItemId(item.getId());
+            detail.setImage(item.getImage());
+            detail.setOrderId(orderId);
+            details.add(detail);
+        }
+        detailService.saveBatch(details);
+    }
+
+    /**
+     * 执行当前步骤或补偿并推进 saga，返回是否需要继续执行
+     */
+    private boolean proceed(OrderSaga saga, OrderSagaPayload payload) {
+        SagaStatus status = SagaStatus.of(saga.getStatus());
+        OrderSagaStep step = OrderSagaStep.of(saga.getStep());
+        SagaStatus toStatus;
+        OrderSagaStep toStep;
+        if (status == SagaStatus.RUNNING) {
+            if (step == OrderSagaStep.RESERVE_STOCK) {
+                // 下单请求在预留库存时中断，无法确认库存是否已扣减，按订单id 归还，没有扣减时不会归还
+                log.warn("下单 saga 在预留库存时中断，开始补偿，saga id：{}", saga.getId());
+                if (sagaMapper.transit(saga.getId(), status.getValue(), step.getValue(),
+                        SagaStatus.COMPENSATING.getValue(), step.getValue()) == 0) {
+                    return false;
+                }
+                saga.setStatus(SagaStatus.COMPENSATING.getValue()).setRetryCount(0);
+                return true;
+            }
+            if (!claim(saga.getId(), status, step)) {
+                return false;
+            }
+            execute(step, saga.getId(), payload);
+            toStep = step.next();
+            toStatus = toStep == null ? SagaStatus.DONE : SagaStatus.RUNNING;
+        } else if (status == SagaStatus.COMPENSATING) {
+            if (!claim(saga.getId(), status, step)) {
+                return false;
+            }
+            if (step == OrderSagaStep.CREATE_ORDER) {
+                if (!compensateOrder(saga.getId())) {
+                    return false;
+                }
+                saga.setStep(OrderSagaStep.RESERVE_STOCK.getValue()).setRetryCount(0);
+                return true;
+            }
+            compensate(step, saga.getId(), payload);
+            toStep = step.previousCompensable();
+            toStatus = toStep == null ? SagaStatus.COMPENSATED : SagaStatus.COMPENSATING;
+        } else {
+            return false;
+        }
+        // 结束时保留最后一个步骤
+        if (toStep == null) {
+            toStep = step;
+        }
+        int rows = sagaMapper.transit(saga.getId(), status.getValue(), step.getValue(), toStatus.getValue(), toStep.getValue());
+        if (rows == 0) {
+            // 占用到期后已被其它消费者推进，或者订单被取消
+            return false;
+        }
+        saga.setStatus(toStatus.getValue()).setStep(toStep.getValue()).setRetryCount(0);
+        return toStatus == SagaStatus.RUNNING || toStatus == SagaStatus.COMPENSATING;
+    }
+
+    /**
+     * 占用当前步骤，已被其它消费者推进或者正在执行时返回 false
+     */
+    private boolean claim(Long sagaId, SagaStatus status, OrderSagaStep step) {
+        long leaseSeconds = tradeProperties.getSaga().getLease().toSeconds();
+        return sagaMapper.claim(sagaId, status.getValue(), step.getValue(), leaseSeconds) > 0;
+    }
+
+    private void execute(OrderSagaStep step, Long orderId, OrderSagaPayload payload) {
+        switch (step) {
+            case CREATE_ORDER:
+                // 创建订单与预留库存在下单请求中完成，不会由消息执行
+                break;
+            case CLEAR_CART:
+                // 按订单id 幂等，重复执行不会删除用户之后重新加入购物车的商品
+                cartClient.clearOrderedItems(orderId, payload.getDetails().stream()
+                        .map(OrderDetailDTO::getItemId)
+                        .collect(Collectors.toSet()));
+                break;
+            case SCHEDULE_TIMEOUT:
+                orderTimeoutScheduler.schedule(orderId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void compensate(OrderSagaStep step, Long orderId, OrderSagaPayload payload) {
+        switch (step) {
+            case RESERVE_STOCK:
+                // 按订单id 幂等，重复投递或超时重试不会重复归还
+                itemClient.restoreStock(List.of(new OrderStockRestoreDTO().setOrderId(orderId).setDetails(payload.getDetails())));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 取消订单并推进到归还库存，二者在同一个本地事务中完成，返回是否需要继续补偿。
+     * 订单已被超时取消时库存由取消的一方归还，saga 直接结束；订单已支付时不能再补偿
+     */
+    private boolean compensateOrder(Long orderId) {
+        int fromStatus = SagaStatus.COMPENSATING.getValue();
+        int fromStep = OrderSagaStep.CREATE_ORDER.getValue();
+        Boolean next = transactionTemplate.execute(tx -> {
+            if (orderMapper.cancelUnpaid(orderId) == 0) {
+                Order order = orderMapper.selectById(orderId);
+                if (order != null && order.getStatus() == 5) {
+                    sagaMapper.transit(orderId, fromStatus, fromStep, SagaStatus.COMPENSATED.getValue(), fromStep);
+                    return false;
+                }
+                if (order != null) {
+                    log.warn("订单已支付，停止补偿，订单id：{}", orderId);
+                    sagaMapper.transit(orderId, fromStatus, fromStep,
+                            SagaStatus.DONE.getValue(), OrderSagaStep.last().getValue());
+                    return false;
+                }
+                // 订单没有写入，继续归还库存
+            }
+            if (sagaMapper.transit(orderId, fromStatus, fromStep, fromStatus, OrderSagaStep.RESERVE_STOCK.getValue()) == 0) {
+                // 已被其它消费者推进，撤销本次取消
+                tx.setRollbackOnly();
+                return false;
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(next);
+    }
+
+    private void retry(OrderSaga saga, Exception e) {
+        TradeProperties.Saga properties = tradeProperties.getSaga();
+        int retries = saga.getRetryCount() + 1;
+        OrderSagaStep step = OrderSagaStep.of(saga.getStep());
+        boolean running = saga.getStatus() == SagaStatus.RUNNING.getValue();
+        // 1. 正向步骤重试次数用完，从之前最近一个有补偿的步骤开始补偿，向前重试的步骤不补偿
+        if (running && retries > properties.getMaxRetries() && !step.isRetryForward()) {
+            log.error("下单 saga 步骤【{}】失败，开始补偿，saga id：{}", step.getDesc(), saga.getId(), e);
+            if (sagaMapper.transit(saga.getId(), SagaStatus.RUNNING.getValue(), step.getValue(),
+                    SagaStatus.COMPENSATING.getValue(), step.previousCompensable().getValue()) > 0) {
+                dispatch(saga.getId());
+            }
+            return;
+        }
+        // 2. 延迟后重试，补偿步骤和向前重试的步骤一直重试直到成功
+        if (running && retries > properties.getMaxRetries()) {
+            log.error("下单 saga 步骤【{}】第 {} 次执行失败，继续重试，saga id：{}", step.getDesc(), retries, saga.getId(), e);
+        } else {
+            log.warn("下单 saga 步骤【{}】第 {} 次执行失败，saga id：{}", step.getDesc(), retries, saga.getId(), e);
+        }
+        if (sagaMapper.incrementRetry(saga.getId(), saga.getStatus(), saga.getStep()) == 0) {
+            // 已被其它消费者推进
+            return;
+        }
+        long delay = properties.getRetryDelay().toMillis() * Math.min(retries, 60);
+        rabbitTemplate.convertAndSend(MQConstants.DELAY_EXCHANGE_NAME, MQConstants.DELAY_ORDER_SAGA_KEY, saga.getId(), message -> {
+            message.getMessageProperties().setHeader("x-delay", delay);
+            return message;
+        });
+    }
+
+    public void dispatch(Long sagaId) {
+        rabbitTemplate.convertAndSend(MQConstants.ORDER_EXCHANGE_NAME, MQConstants.ORDER_SAGA_KEY, sagaId);
+    }
+
+    private void tryDispatch(Long sagaId) {
+        try {
+            dispatch(sagaId);
+        } catch (Exception e) {
+            log.error("发送下单 saga 推进消息失败，由清理任务重新投递，saga id：{}", sagaId, e);
+        }
+    }
+}
@@ -1,15 +1,53 @@
 package com.hmall.trade.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmall.trade.domain.dto.AsyncOrderDTO;
 import com.hmall.trade.domain.dto.OrderFormDTO;
 import com.hmall.trade.domain.vo.Order;
+import com.hmall.trade.domain.vo.OrderTicketVO;
+
+import java.util.Collection;
 
 
 public interface IOrderService extends IService<Order> {
 
     Long createOrder(OrderFormDTO orderFormDTO);
 
+    /**
+     * 异步下单：预留库存后发送下单消息，返回票据id
+     */
+    Long submitOrderAsync(OrderFormDTO orderFormDTO);
+
+    /**
+     * 写入异步下单的订单，订单已存在时返回 false
+     */
+    boolean persistAsyncOrder(AsyncOrderDTO asyncOrder);
+
+    void afterAsyncOrderCreated(AsyncOrderDTO asyncOrder);
+
+    /**
+     * 异步下单无法写入订单，归还预留的库存并标记下单失败。商品服务不可用时由定时任务重新归还
+     */
+    void failAsyncOrder(AsyncOrderDTO asyncOrder, String reason);
+
+    OrderTicketVO queryOrderTicket(Long ticketId);
+
     void markOrderPaySuccess(Long orderId);
 
+    /**
+     * 检查超过支付时间的订单：已支付的标记为已支付，未支付的取消，返回实际取消的订单数量
+     */
+    int checkPayTimeout(Collection<Long> orderIds);
+
     void cancelOrder(Long orderId);
+
+    /**
+     * 批量取消未支付的订单并合并归还库存，返回实际取消的订单数量
+     */
+    int cancelOrders(Collection<Long> orderIds);
+
+    /**
+     * 归还已取消订单或者下单失败的库存并删除待归还记录，商品服务按订单id 幂等，失败时抛出异常，由定时任务重试
+     */
+    void restoreStock(Collection<Long> orderIds);
 }
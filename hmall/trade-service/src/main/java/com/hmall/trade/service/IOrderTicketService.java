@@ -0,0 +1,17 @@
+package com.hmall.trade.service;
+
+import com.hmall.trade.domain.vo.OrderTicketVO;
+
+public interface IOrderTicketService {
+
+    void create(Long ticketId, Long userId);
+
+    void markCreated(Long ticketId);
+
+    void markFailed(Long ticketId, String reason);
+
+    /**
+     * 查询票据，不存在或者已过期时返回 null
+     */
+    OrderTicketVO query(Long ticketId, Long userId);
+}
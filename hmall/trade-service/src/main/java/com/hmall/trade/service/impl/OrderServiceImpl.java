@@ -1,90 +1,173 @@
 package com.hmall.trade.service.impl;
 
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmall.api.client.CartClient;
 import com.hmall.api.client.ItemClient;
 import com.hmall.api.client.PayClient;
-import com.hmall.api.domain.dto.ItemDTO;
+import com.hmall.api.constants.TradeMQConstants;
+import com.hmall.api.domain.dto.CheckoutQuoteDTO;
+import com.hmall.api.domain.dto.ItemSnapshotDTO;
+import com.hmall.api.domain.dto.OrderCreatedDTO;
 import com.hmall.api.domain.dto.OrderDetailDTO;
+import com.hmall.api.domain.dto.OrderStockRestoreDTO;
+import com.hmall.api.domain.dto.PayOrderDTO;
+import com.hmall.api.domain.dto.StockDeductResultDTO;
+import com.hmall.api.utils.CheckoutQuoteSigner;
 import com.hmall.common.exception.BadRequestException;
+import com.hmall.common.exception.BizIllegalException;
 import com.hmall.common.utils.UserContext;
 import com.hmall.trade.constants.MQConstants;
+import com.hmall.trade.domain.dto.AsyncOrderDTO;
 import com.hmall.trade.domain.dto.OrderFormDTO;
+import com.hmall.trade.domain.dto.OrderSagaPayload;
 import com.hmall.trade.domain.po.OrderDetail;
+import com.hmall.trade.domain.po.OrderStockRestore;
 import com.hmall.trade.domain.vo.Order;
+import com.hmall.trade.domain.vo.OrderTicketVO;
+import com.hmall.trade.enums.OrderTicketStatus;
 import com.hmall.trade.mapper.OrderMapper;
+import com.hmall.trade.mapper.OrderSagaMapper;
+import com.hmall.trade.mapper.OrderStockRestoreMapper;
 import com.hmall.trade.service.IOrderDetailService;
 import com.hmall.trade.service.IOrderService;
-import io.seata.spring.annotation.GlobalTransactional;
+import com.hmall.trade.service.IOrderTicketService;
+import com.hmall.trade.saga.OrderSagaOrchestrator;
+import com.hmall.trade.timeout.OrderTimeoutScheduler;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements IOrderService {
 
     private final ItemClient itemClient;
-    private final IOrderDetailService detailService;
-    private final CartClient cartClient;
     private final RabbitTemplate rabbitTemplate;
     private final PayClient payClient;
+    private final CheckoutQuoteSigner checkoutQuoteSigner;
+    private final IOrderTicketService orderTicketService;
+    private final OrderSagaOrchestrator orderSagaOrchestrator;
+    private final OrderSagaMapper orderSagaMapper;
+    private final OrderStockRestoreMapper orderStockRestoreMapper;
+    private final IOrderDetailService detailService;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderTimeoutScheduler orderTimeoutScheduler;
 
     @Override
-    @GlobalTransactional
     public Long createOrder(OrderFormDTO orderFormDTO) {
-        // 1.订单数据
-        Order order = new Order();
-        // 1.1.查询商品
+        // 1. 查询商品，提交了报价单时直接使用报价单中的商品
+        List<ItemSnapshotDTO> items = resolveItems(orderFormDTO);
+        // 2. 由 saga 依次完成预留库存、创建订单、清理购物车、发送支付超时检查，失败时按相反顺序补偿
+        OrderSagaPayload payload = new OrderSagaPayload();
+        payload.setUserId(UserContext.getUser());
+        payload.setPaymentType(orderFormDTO.getPaymentType());
+        payload.setItems(items);
+        payload.setDetails(orderFormDTO.getDetails());
+        return orderSagaOrchestrator.start(payload);
+    }
+
+    @Override
+    public Long submitOrderAsync(OrderFormDTO orderFormDTO) {
+        Long userId = UserContext.getUser();
+        // 1. 查询商品
+        List<ItemSnapshotDTO> items = resolveItems(orderFormDTO);
         List<OrderDetailDTO> detailDTOS = orderFormDTO.getDetails();
-        // 1.2.获取商品id和数量的Map
-        Map<Long, Integer> itemNumMap = detailDTOS.stream()
-                .collect(Collectors.toMap(OrderDetailDTO::getItemId, OrderDetailDTO::getNum));
-        Set<Long> itemIds = itemNumMap.keySet();
-        // 1.3.查询商品
-        List<ItemDTO> items = itemClient.queryItemByIds(itemIds);
-        if (items == null || items.size() < itemIds.size()) {
-            throw new BadRequestException("商品不存在");
-        }
-        // 1.4.基于商品价格、购买数量计算商品总价：totalFee
-        int total = 0;
-        for (ItemDTO item : items) {
-            total += item.getPrice() * itemNumMap.get(item.getId());
+        // 2. 生成票据，票据id同时作为订单id，消费者据此保证幂等
+        Long ticketId = IdWorker.getId();
+        // 3. 按票据id 原子扣减库存作为预留，调用失败时无法确认是否已扣减，按票据id 归还
+        List<StockDeductResultDTO> results;
+        try {
+            results = itemClient.deductStockChecked(ticketId, detailDTOS);
+        } catch (Exception e) {
+            log.error("预留库存结果未知，归还库存，票据id：{}", ticketId, e);
+            tryRestoreUnsavedStock(ticketId, detailDTOS);
+            throw new BizIllegalException("下单失败，请稍后重试", e);
         }
-        order.setTotalFee(total);
-        // 1.5.其它属性
-        order.setPaymentType(orderFormDTO.getPaymentType());
-        order.setUserId(UserContext.getUser());
-        order.setStatus(1);
-        // 1.6.将Order写入数据库order表中
-        save(order);
-
-        // 2.保存订单详情
-        List<OrderDetail> details = buildDetails(order.getId(), items, itemNumMap);
-        detailService.saveBatch(details);
-
-        // 3.清理购物车商品
-        cartClient.deleteCartItemByIds(itemIds);
-
-        // 4.扣减库存
+        // 库存不足时没有扣减任何商品，直接失败
+        orderSagaOrchestrator.checkReserved(results, items);
+        AsyncOrderDTO asyncOrder = new AsyncOrderDTO();
+        asyncOrder.setOrderId(ticketId);
+        asyncOrder.setUserId(userId);
+        asyncOrder.setPaymentType(orderFormDTO.getPaymentType());
+        asyncOrder.setItems(items);
+        asyncOrder.setDetails(detailDTOS);
+        // 4. 发送下单消息，后续步骤由消费者完成
         try {
-            itemClient.deductStock(detailDTOS);
+            orderTicketService.create(ticketId, userId);
+            rabbitTemplate.convertAndSend(MQConstants.ORDER_EXCHANGE_NAME, MQConstants.ORDER_CREATE_KEY, asyncOrder);
         } catch (Exception e) {
-            throw new RuntimeException("库存不足！");
+            log.error("提交异步下单消息失败，票据id：{}", ticketId, e);
+            tryRestoreUnsavedStock(ticketId, detailDTOS);
+            throw new BizIllegalException("下单人数过多，请稍后重试", e);
         }
-        // 5. 添加发送延迟消息，检查订单支付状态
-        rabbitTemplate.convertAndSend(MQConstants.DELAY_EXCHANGE_NAME, MQConstants.DELAY_ORDER_KEY, order.getId(), message -> {
-            message.getMessageProperties().setHeader("x-delay", 10000);
-            return message;
-        });
-        return order.getId();
+        return ticketId;
+    }
+
+    @Override
+    @Transactional
+    public boolean persistAsyncOrder(AsyncOrderDTO asyncOrder) {
+        // 1. 订单已存在说明是重复消息
+        if (lambdaQuery().eq(Order::getId, asyncOrder.getOrderId()).exists()) {
+            return false;
+        }
+        // 2. 写入订单和订单详情
+        orderSagaOrchestrator.saveOrder(asyncOrder.getOrderId(), asyncOrder.getUserId(), asyncOrder.getPaymentType(),
+                asyncOrder.getItems(), asyncOrder.getDetails());
+        return true;
+    }
+
+    @Override
+    public void afterAsyncOrderCreated(AsyncOrderDTO asyncOrder) {
+        // 1. 更新票据状态
+        orderTicketService.markCreated(asyncOrder.getOrderId());
+        // 2. 通知下游清理购物车等，下游按订单id幂等处理
+        List<Long> itemIds = asyncOrder.getDetails().stream()
+                .map(OrderDetailDTO::getItemId)
+                .distinct()
+                .collect(Collectors.toList());
+        rabbitTemplate.convertAndSend(TradeMQConstants.TRADE_EXCHANGE_NAME, TradeMQConstants.ORDER_CREATED_KEY,
+                new OrderCreatedDTO(asyncOrder.getOrderId(), asyncOrder.getUserId(), itemIds));
+        // 3. 发送延迟消息，检查订单支付状态
+        orderTimeoutScheduler.schedule(asyncOrder.getOrderId());
+    }
+
+    @Override
+    public void failAsyncOrder(AsyncOrderDTO asyncOrder, String reason) {
+        // 订单没有写入，记录待归还库存后立即归还，商品服务不可用时由定时任务重新归还，不阻塞消息消费。
+        // 记录失败时抛出异常，消息重新投递；商品服务按订单id 幂等，重新投递不会重复归还
+        restoreUnsavedStock(asyncOrder.getOrderId(), asyncOrder.getDetails());
+        orderTicketService.markFailed(asyncOrder.getOrderId(), reason);
+    }
+
+    @Override
+    public OrderTicketVO queryOrderTicket(Long ticketId) {
+        Long userId = UserContext.getUser();
+        OrderTicketVO ticket = orderTicketService.query(ticketId, userId);
+        if (ticket != null) {
+            return ticket;
+        }
+        // 票据已过期，根据订单判断是否下单成功
+        Order order = lambdaQuery().eq(Order::getId, ticketId).eq(Order::getUserId, userId).one();
+        if (order == null) {
+            throw new BadRequestException("下单请求不存在或已过期");
+        }
+        ticket = new OrderTicketVO();
+        ticket.setTicketId(ticketId);
+        ticket.setStatus(OrderTicketStatus.CREATED);
+        ticket.setOrderId(order.getId());
+        return ticket;
     }
 
     @Override
@@ -98,24 +181,137 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
                 .update();
     }
 
+    @Override
+    public int checkPayTimeout(Collection<Long> orderIds) {
+        // 1. 一次查询所有订单，只处理仍未支付的订单
+        List<Long> unpaidIds = lambdaQuery()
+                .select(Order::getId)
+                .in(Order::getId, orderIds)
+                .eq(Order::getStatus, 1)
+                .list()
+                .stream()
+                .map(Order::getId)
+                .collect(Collectors.toList());
+        if (unpaidIds.isEmpty()) {
+            return 0;
+        }
+        // 2. 批量查询支付流水，找出已经支付的订单
+        Set<Long> paidIds = payClient.queryPayOrdersByBizOrderNos(unpaidIds)
+                .stream()
+                .filter(payOrder -> payOrder.getStatus() == 3)
+                .map(PayOrderDTO::getBizOrderNo)
+                .collect(Collectors.toSet());
+        // 3. 已支付的订单一条语句标记为已支付
+        if (!paidIds.isEmpty()) {
+            getBaseMapper().batchMarkPaid(paidIds);
+        }
+        // 4. 未支付的订单批量取消，恢复库存
+        List<Long> expiredIds = unpaidIds.stream()
+                .filter(id -> !paidIds.contains(id))
+                .collect(Collectors.toList());
+        return expiredIds.isEmpty() ? 0 : cancelOrders(expiredIds);
+    }
+
     @Override
     public void cancelOrder(Long orderId) {
-        return;
+        cancelOrders(List.of(orderId));
     }
 
-    private List<OrderDetail> buildDetails(Long orderId, List<ItemDTO> items, Map<Long, Integer> numMap) {
-        List<OrderDetail> details = new ArrayList<>(items.size());
-        for (ItemDTO item : items) {
-            OrderDetail detail = new OrderDetail();
-            detail.setName(item.getName());
-            detail.setSpec(item.getSpec());
-            detail.setPrice(item.getPrice());
-            detail.setNum(numMap.get(item.getId()));
-            detail.setItemId(item.getId());
-            detail.setImage(item.getImage());
-            detail.setOrderId(orderId);
-            details.add(detail);
+    @Override
+    public int cancelOrders(Collection<Long> orderIds) {
+        // 1. 锁定仍未支付的订单，改为已取消、结束下单 saga 并记录待归还库存，同一个本地事务中完成。
+        // 只有把订单从未支付改为已取消的一方才归还库存，重复消息、多个实例同时取消都不会重复归还
+        List<Long> cancelledIds = transactionTemplate.execute(status -> {
+            List<Long> ids = getBaseMapper().selectUnpaidIdsForUpdate(orderIds);
+            if (!ids.isEmpty()) {
+                getBaseMapper().batchCancelUnpaid(ids);
+                orderSagaMapper.markCompensated(ids);
+                orderStockRestoreMapper.insertIgnore(ids);
+            }
+            return ids;
+        });
+        if (cancelledIds == null || cancelledIds.isEmpty()) {
+            return 0;
+        }
+        // 2. 立即归还库存，失败或者提交后实例崩溃时由定时任务根据待归还记录重新归还
+        try {
+            restoreStock(cancelledIds);
+        } catch (Exception e) {
+            log.error("归还库存失败，稍后由定时任务重新归还，订单数量：{}", cancelledIds.size(), e);
+        }
+        return cancelledIds.size();
+    }
+
+    @Override
+    public void restoreStock(Collection<Long> orderIds) {
+        // 1. 按订单分组，一次调用归还所有订单的库存，商品服务按订单id 幂等，重复归还的订单会被跳过
+        Map<Long, List<OrderDetailDTO>> detailMap = detailService.lambdaQuery()
+                .in(OrderDetail::getOrderId, orderIds)
+                .list()
+                .stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId, Collectors.mapping(
+                        detail -> new OrderDetailDTO().setItemId(detail.getItemId()).setNum(detail.getNum()),
+                        Collectors.toList())));
+        // 没有写入订单的下单请求，使用待归还记录中的商品和数量
+        List<Long> unsavedIds = orderIds.stream().filter(id -> !detailMap.containsKey(id)).collect(Collectors.toList());
+        if (!unsavedIds.isEmpty()) {
+            for (OrderStockRestore record : orderStockRestoreMapper.selectWithDetails(unsavedIds)) {
+                detailMap.put(record.getOrderId(), JSONUtil.toList(record.getDetails(), OrderDetailDTO.class));
+            }
+            if (detailMap.size() < orderIds.size()) {
+                log.warn("{}个订单既没有订单详情也没有记录商品，无法归还库存", orderIds.size() - detailMap.size());
+            }
+        }
+        List<OrderStockRestoreDTO> restores = detailMap.entrySet().stream()
+                .map(entry -> new OrderStockRestoreDTO().setOrderId(entry.getKey()).setDetails(entry.getValue()))
+                .collect(Collectors.toList());
+        if (!restores.isEmpty()) {
+            itemClient.restoreStock(restores);
+        }
+        // 2. 归还成功后删除待归还记录
+        orderStockRestoreMapper.deleteByOrderIds(orderIds);
+    }
+
+    /**
+     * 记录没有写入订单的待归还库存并立即归还，归还失败时由定时任务重新归还
+     */
+    private void restoreUnsavedStock(Long orderId, List<OrderDetailDTO> details) {
+        orderStockRestoreMapper.insertIgnoreWithDetails(orderId, JSONUtil.toJsonStr(details));
+        try {
+            restoreStock(List.of(orderId));
+        } catch (Exception e) {
+            log.error("归还库存失败，稍后由定时任务重新归还，订单id：{}", orderId, e);
+        }
+    }
+
+    private void tryRestoreUnsavedStock(Long orderId, List<OrderDetailDTO> details) {
+        try {
+            restoreUnsavedStock(orderId, details);
+        } catch (Exception e) {
+            log.error("记录待归还库存失败，需要人工核对库存，订单id：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 查询下单的商品快照。提交了报价单时校验签名后直接使用报价单中的商品和数量，不再查询商品服务
+     */
+    private List<ItemSnapshotDTO> resolveItems(OrderFormDTO orderFormDTO) {
+        CheckoutQuoteDTO quote = orderFormDTO.getQuote();
+        if (quote != null) {
+            checkoutQuoteSigner.verify(quote, UserContext.getUser());
+            orderFormDTO.setDetails(quote.getItems().stream()
+                    .map(item -> new OrderDetailDTO().setItemId(item.getItemId()).setNum(item.getNum()))
+                    .collect(Collectors.toList()));
+            return quote.getItems().stream()
+                    .map(item -> new ItemSnapshotDTO(item.getItemId(), item.getName(), item.getSpec(), item.getPrice(), item.getImage()))
+                    .collect(Collectors.toList());
+        }
+        // 只包含订单需要的名称、规格、价格和图片
+        Set<Long> itemIds = orderFormDTO.getDetails().stream().map(OrderDetailDTO::getItemId).collect(Collectors.toSet());
+        List<ItemSnapshotDTO> items = itemClient.queryItemSnapshots(itemIds);
+        if (items == null || items.size() < itemIds.size()) {
+            throw new BadRequestException("商品不存在");
         }
-        return details;
+        return items;
     }
 }
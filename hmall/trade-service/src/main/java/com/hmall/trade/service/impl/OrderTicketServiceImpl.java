@@ -0,0 +1,80 @@
+package com.hmall.trade.service.impl;
+
+import com.hmall.common.exception.ForbiddenException;
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.domain.vo.OrderTicketVO;
+import com.hmall.trade.enums.OrderTicketStatus;
+import com.hmall.trade.service.IOrderTicketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * 异步下单票据保存在 Redis 的 hash 中，前端轮询查询下单结果
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderTicketServiceImpl implements IOrderTicketService {
+
+    private static final String TICKET_KEY_PREFIX = "order:ticket:";
+    private static final String FIELD_USER = "userId";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_REASON = "reason";
+
+    private final StringRedisTemplate redisTemplate;
+    private final TradeProperties tradeProperties;
+
+    @Override
+    public void create(Long ticketId, Long userId) {
+        String key = TICKET_KEY_PREFIX + ticketId;
+        redisTemplate.opsForHash().putAll(key, Map.of(
+                FIELD_USER, String.valueOf(userId),
+                FIELD_STATUS, OrderTicketStatus.PENDING.name()));
+        redisTemplate.expire(key, tradeProperties.getTicketTtl());
+    }
+
+    @Override
+    public void markCreated(Long ticketId) {
+        update(ticketId, Map.of(FIELD_STATUS, OrderTicketStatus.CREATED.name()));
+    }
+
+    @Override
+    public void markFailed(Long ticketId, String reason) {
+        update(ticketId, Map.of(FIELD_STATUS, OrderTicketStatus.FAILED.name(), FIELD_REASON, String.valueOf(reason)));
+    }
+
+    @Override
+    public OrderTicketVO query(Long ticketId, Long userId) {
+        Map<Object, Object> values = redisTemplate.opsForHash().entries(TICKET_KEY_PREFIX + ticketId);
+        if (values.isEmpty()) {
+            return null;
+        }
+        if (!String.valueOf(userId).equals(values.get(FIELD_USER))) {
+            throw new ForbiddenException("无权查看该下单请求");
+        }
+        OrderTicketVO vo = new OrderTicketVO();
+        vo.setTicketId(ticketId);
+        vo.setStatus(OrderTicketStatus.valueOf((String) values.get(FIELD_STATUS)));
+        vo.setReason((String) values.get(FIELD_REASON));
+        if (vo.getStatus() == OrderTicketStatus.CREATED) {
+            vo.setOrderId(ticketId);
+        }
+        return vo;
+    }
+
+    private void update(Long ticketId, Map<String, String> values) {
+        // 票据只用于展示，更新失败时前端可以通过订单查询结果，不影响下单流程
+        try {
+            String key = TICKET_KEY_PREFIX + ticketId;
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                redisTemplate.opsForHash().putAll(key, values);
+            }
+        } catch (Exception e) {
+            log.error("更新下单票据失败，票据id：{}", ticketId, e);
+        }
+    }
+}
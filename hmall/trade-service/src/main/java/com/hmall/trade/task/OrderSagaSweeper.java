@@ -0,0 +1,50 @@
+package com.hmall.trade.task;
+
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.enums.SagaStatus;
+import com.hmall.trade.mapper.OrderSagaMapper;
+import com.hmall.trade.saga.OrderSagaOrchestrator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 重新投递长时间没有推进的下单 saga：推进消息发送失败、丢失，或者执行步骤的实例崩溃。
+ * 每次只投递最久没有推进的一批，正在执行的步骤被占用，重复投递不会重复执行
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderSagaSweeper {
+
+    private final OrderSagaMapper sagaMapper;
+    private final OrderSagaOrchestrator orchestrator;
+    private final TradeProperties tradeProperties;
+
+    @Scheduled(fixedDelayString = "${hm.trade.saga.sweep-interval:1m}")
+    public void redispatchStaleSagas() {
+        TradeProperties.Saga saga = tradeProperties.getSaga();
+        LocalDateTime deadline = LocalDateTime.now().minus(saga.getStaleAfter());
+        for (SagaStatus status : List.of(SagaStatus.RUNNING, SagaStatus.COMPENSATING)) {
+            // 1. 查询长时间没有推进的 saga
+            List<Long> ids = sagaMapper.selectStaleIds(status.getValue(), deadline, saga.getSweepBatchSize());
+            if (ids.isEmpty()) {
+                continue;
+            }
+            // 2. 重新投递，由消息消费者继续执行
+            log.warn("重新投递{}个长时间没有推进的下单 saga，状态：{}", ids.size(), status.getDesc());
+            for (Long id : ids) {
+                try {
+                    orchestrator.dispatch(id);
+                } catch (Exception e) {
+                    log.error("重新投递下单 saga 失败，saga id：{}", id, e);
+                    return;
+                }
+            }
+        }
+    }
+}
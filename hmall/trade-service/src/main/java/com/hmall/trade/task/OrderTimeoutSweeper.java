@@ -0,0 +1,79 @@
+package com.hmall.trade.task;
+
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.mapper.OrderMapper;
+import com.hmall.trade.service.IOrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 兜底检查超时未支付的订单：延迟消息丢失时订单会一直占用库存。
+ * 按 id 顺序分批查询，与延迟消息一样先查询支付状态，已支付的订单标记为已支付，未支付的才取消，每批之间停顿一段时间。
+ * 取消时按订单状态做条件更新，多个实例同时执行或者与延迟消息同时取消都不会重复归还库存
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderTimeoutSweeper {
+
+    private final OrderMapper orderMapper;
+    private final IOrderService orderService;
+    private final TradeProperties tradeProperties;
+
+    @Scheduled(fixedDelayString = "${hm.trade.sweeper.interval:1m}")
+    public void cancelExpiredOrders() {
+        TradeProperties.Sweeper sweeper = tradeProperties.getSweeper();
+        if (!sweeper.getEnabled()) {
+            return;
+        }
+        // 正常情况下超时订单已被延迟消息取消，多留一段时间避免和延迟消息重复处理
+        LocalDateTime deadline = LocalDateTime.now()
+                .minus(tradeProperties.getPayTimeout())
+                .minus(sweeper.getGrace());
+        long lastId = 0;
+        int cancelled = 0;
+        while (true) {
+            // 1. 查询下一批超时未支付的订单 id
+            List<Long> ids = orderMapper.selectExpiredUnpaidIds(lastId, deadline, sweeper.getBatchSize());
+            if (ids.isEmpty()) {
+                break;
+            }
+            // 2. 批量检查支付状态，取消未支付的订单并合并归还库存
+            try {
+                cancelled += orderService.checkPayTimeout(ids);
+            } catch (Exception e) {
+                log.error("批量检查超时订单失败，起始订单id：{}", ids.get(0), e);
+            }
+            lastId = ids.get(ids.size() - 1);
+            if (ids.size() < sweeper.getBatchSize()) {
+                break;
+            }
+            // 3. 停顿一段时间再取消下一批
+            if (!pause(sweeper.getPause())) {
+                break;
+            }
+        }
+        if (cancelled > 0) {
+            log.warn("取消了{}个超时未支付的订单，可能有延迟消息丢失", cancelled);
+        }
+    }
+
+    private boolean pause(Duration pause) {
+        if (pause.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.hmall.trade.task;
+
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.mapper.OrderStockRestoreMapper;
+import com.hmall.trade.service.IOrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 重新归还已取消订单以及下单失败的库存：取消订单提交后实例崩溃，或者调用商品服务失败。
+ * 只处理记录了一段时间的订单，避免和取消订单后立即归还的一方同时调用，同时调用时商品服务也按订单id 幂等
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockRestoreRelay {
+
+    private final OrderStockRestoreMapper stockRestoreMapper;
+    private final IOrderService orderService;
+    private final TradeProperties tradeProperties;
+
+    @Scheduled(fixedDelayString = "${hm.trade.stock-restore.interval:30s}")
+    public void restorePendingStock() {
+        TradeProperties.StockRestore properties = tradeProperties.getStockRestore();
+        LocalDateTime deadline = LocalDateTime.now().minus(properties.getDelay());
+        while (true) {
+            // 1. 查询一批仍未归还库存的订单
+            List<Long> orderIds = stockRestoreMapper.selectPendingIds(deadline, properties.getBatchSize());
+            if (orderIds.isEmpty()) {
+                return;
+            }
+            // 2. 归还库存并删除记录，失败时等待下次执行
+            try {
+                orderService.restoreStock(orderIds);
+            } catch (Exception e) {
+                log.error("重新归还库存失败，稍后重试，订单数量：{}", orderIds.size(), e);
+                return;
+            }
+            log.warn("重新归还了{}个订单的库存", orderIds.size());
+            if (orderIds.size() < properties.getBatchSize()) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.hmall.trade.timeout;
+
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.constants.MQConstants;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 每个订单发送一条延迟消息，到期后由 OrderDelayMessageListener 检查订单支付状态
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "hm.trade.timeout", name = "scheduler", havingValue = "delay-message", matchIfMissing = true)
+public class DelayMessageTimeoutScheduler implements OrderTimeoutScheduler {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final TradeProperties tradeProperties;
+
+    @Override
+    public void schedule(Long orderId) {
+        long delay = tradeProperties.getPayTimeout().toMillis();
+        rabbitTemplate.convertAndSend(MQConstants.DELAY_EXCHANGE_NAME, MQConstants.DELAY_ORDER_KEY, orderId, message -> {
+            message.getMessageProperties().setHeader("x-delay", delay);
+            return message;
+        });
+    }
+}
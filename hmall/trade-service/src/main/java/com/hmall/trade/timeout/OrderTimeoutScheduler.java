@@ -0,0 +1,13 @@
+package com.hmall.trade.timeout;
+
+/**
+ * 支付超时检查的调度器：下单后登记订单，超过支付超时时间后检查订单的支付状态，未支付则取消订单。
+ * 通过 hm.trade.timeout.scheduler 选择实现
+ */
+public interface OrderTimeoutScheduler {
+
+    /**
+     * 登记新创建的订单，从现在开始计算支付超时时间
+     */
+    void schedule(Long orderId);
+}
@@ -0,0 +1,137 @@
+package com.hmall.trade.timeout;
+
+import java.util.Arrays;
+
+/**
+ * 分层时间轮，保存订单id和到期的格子序号。
+ * <p>
+ * 第 0 层每一格代表一个 tick，第 n 层每一格代表 wheelSize ^ n 个 tick。
+ * 任务按距离到期的格数放入能容纳它的最低一层，上层的格子到期时把其中的任务重新放入下层，
+ * 第 0 层的格子到期时其中的任务全部到期。每个格子用两个 long 数组保存订单id和到期格子序号，不创建包装对象。
+ * <p>
+ * 非线程安全，由调用方加锁
+ */
+public class TimingWheel {
+
+    private final int bits;
+    private final int mask;
+    private final Bucket[][] wheels;
+    /**
+     * 当前的格子序号，即自纪元以来经过的 tick 数
+     */
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(int wheelSize, int levels, long startTick) {
+        if (Integer.bitCount(wheelSize) != 1 || wheelSize < 2) {
+            throw new IllegalArgumentException("时间轮的格数必须是 2 的幂");
+        }
+        this.bits = Integer.numberOfTrailingZeros(wheelSize);
+        this.mask = wheelSize - 1;
+        this.wheels = new Bucket[levels][wheelSize];
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < wheelSize; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.currentTick = startTick;
+    }
+
+    public long currentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 添加任务，已经到期的任务直接放入 expired 并返回 false
+     */
+    public boolean add(long id, long deadlineTick, Bucket expired) {
+        long delta = deadlineTick - currentTick;
+        if (delta <= 0) {
+            expired.add(id, deadlineTick);
+            return false;
+        }
+        int level = 0;
+        while (level < wheels.length - 1 && delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        // 超出最高一层的任务先放入最高一层，到期后重新计算位置
+        int index = (int) ((deadlineTick >>> (bits * level)) & mask);
+        wheels[level][index].add(id, deadlineTick);
+        size++;
+        return true;
+    }
+
+    /**
+     * 前进一格，把到期的任务放入 expired
+     */
+    public void advance(Bucket expired) {
+        long tick = ++currentTick;
+        // 1. 从最高一层开始，把到达边界的格子中的任务放入下层
+        for (int level = wheels.length - 1; level > 0; level--) {
+            if ((tick & ((1L << (bits * level)) - 1)) != 0) {
+                continue;
+            }
+            int index = (int) ((tick >>> (bits * level)) & mask);
+            Bucket bucket = wheels[level][index];
+            if (bucket.size == 0) {
+                continue;
+            }
+            wheels[level][index] = new Bucket();
+            size -= bucket.size;
+            for (int i = 0; i < bucket.size; i++) {
+                add(bucket.ids[i], bucket.deadlines[i], expired);
+            }
+        }
+        // 2. 第 0 层当前格子中的任务全部到期
+        int index = (int) (tick & mask);
+        Bucket bucket = wheels[0][index];
+        if (bucket.size == 0) {
+            return;
+        }
+        size -= bucket.size;
+        for (int i = 0; i < bucket.size; i++) {
+            expired.add(bucket.ids[i], bucket.deadlines[i]);
+        }
+        bucket.clear();
+    }
+
+    /**
+     * 时间轮的一个格子，也用于收集到期的任务
+     */
+    public static class Bucket {
+        private long[] ids = new long[4];
+        private long[] deadlines = new long[4];
+        private int size;
+
+        public void add(long id, long deadlineTick) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+                deadlines = Arrays.copyOf(deadlines, size << 1);
+            }
+            ids[size] = id;
+            deadlines[size] = deadlineTick;
+            size++;
+        }
+
+        public long id(int i) {
+            return ids[i];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            size = 0;
+            if (ids.length > 64) {
+                // 到期高峰过后释放大数组
+                ids = new long[4];
+                deadlines = new long[4];
+            }
+        }
+    }
+}
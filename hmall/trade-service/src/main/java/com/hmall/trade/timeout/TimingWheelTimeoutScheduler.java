@@ -0,0 +1,196 @@
+package com.hmall.trade.timeout;
+
+import com.hmall.trade.config.TradeProperties;
+import com.hmall.trade.domain.vo.Order;
+import com.hmall.trade.mapper.OrderMapper;
+import com.hmall.trade.service.IOrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 用本地的分层时间轮保存未支付订单的到期时间，不再为每个订单发送延迟消息。
+ * <p>
+ * 订单只登记在创建它的实例上，启动时从订单表加载全部未支付的订单，到期的订单分批检查支付状态。
+ * <p>
+ * 恢复时不按实例分区：实例之间不知道彼此登记了哪些订单，也没有固定的实例编号，
+ * 所以每个实例启动时都会加载全部未支付的订单。启动后新下的订单只登记在一个实例上，
+ * 重复的只是启动时已存在的订单，它们在一个支付超时时间内到期后就不再重复；
+ * 到期时每个实例都会检查一次，已被其它实例处理的订单不再是未支付，只有同时检查时才会重复查询支付状态，
+ * 取消订单按状态做条件更新，不会重复归还库存。
+ * 实例宕机后没有重启时，它登记的订单由超时订单清理任务兜底
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "hm.trade.timeout", name = "scheduler", havingValue = "timing-wheel")
+public class TimingWheelTimeoutScheduler implements OrderTimeoutScheduler, SmartLifecycle {
+
+    /**
+     * 停止时等待正在检查的订单完成的最长时间
+     */
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final OrderMapper orderMapper;
+    private final IOrderService orderService;
+    private final TradeProperties tradeProperties;
+    private final long tickMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimingWheel wheel;
+    /**
+     * 已经到期、等待检查的订单，由 lock 保护
+     */
+    private TimingWheel.Bucket due = new TimingWheel.Bucket();
+    private volatile boolean running;
+    private Thread worker;
+
+    public TimingWheelTimeoutScheduler(OrderMapper orderMapper, @Lazy IOrderService orderService, TradeProperties tradeProperties) {
+        this.orderMapper = orderMapper;
+        this.orderService = orderService;
+        this.tradeProperties = tradeProperties;
+        TradeProperties.Timeout timeout = tradeProperties.getTimeout();
+        this.tickMillis = timeout.getTick().toMillis();
+        this.wheel = new TimingWheel(timeout.getWheelSize(), timeout.getLevels(), System.currentTimeMillis() / tickMillis);
+    }
+
+    @Override
+    public void schedule(Long orderId) {
+        add(orderId, System.currentTimeMillis() + tradeProperties.getPayTimeout().toMillis());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "order-timeout-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = worker;
+        if (thread == null) {
+            return;
+        }
+        // 唤醒等待下一格的工作线程，等待它退出后再关闭数据库连接池等依赖
+        thread.interrupt();
+        try {
+            thread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("支付超时时间轮的工作线程没有在{}ms内退出", STOP_TIMEOUT_MILLIS);
+        }
+        worker = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void add(long orderId, long deadlineMillis) {
+        // 向上取整，保证不会提前检查
+        long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        lock.lock();
+        try {
+            wheel.add(orderId, deadlineTick, due);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        // 1. 从订单表恢复未支付的订单
+        recover();
+        TimingWheel.Bucket expired = new TimingWheel.Bucket();
+        while (running) {
+            // 2. 把时间轮推进到当前时间，取出到期的订单
+            long nowTick = System.currentTimeMillis() / tickMillis;
+            lock.lock();
+            try {
+                while (wheel.currentTick() < nowTick) {
+                    wheel.advance(due);
+                }
+                TimingWheel.Bucket tmp = due;
+                due = expired;
+                expired = tmp;
+            } finally {
+                lock.unlock();
+            }
+            // 3. 在锁外分批检查到期的订单，不阻塞下单时的登记
+            if (expired.size() > 0) {
+                fire(expired);
+                expired.clear();
+            }
+            // 4. 等待下一格
+            try {
+                Thread.sleep(tickMillis - System.currentTimeMillis() % tickMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 加载全部未支付的订单，每个实例都会加载，见类注释
+     */
+    private void recover() {
+        int batchSize = tradeProperties.getTimeout().getBatchSize();
+        long payTimeout = tradeProperties.getPayTimeout().toMillis();
+        long lastId = 0;
+        int count = 0;
+        try {
+            while (running) {
+                List<Order> orders = orderMapper.selectUnpaidOrders(lastId, batchSize);
+                for (Order order : orders) {
+                    long createTime = order.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    add(order.getId(), createTime + payTimeout);
+                }
+                count += orders.size();
+                if (orders.size() < batchSize) {
+                    break;
+                }
+                lastId = orders.get(orders.size() - 1).getId();
+            }
+            log.info("支付超时时间轮恢复了{}个未支付的订单", count);
+        } catch (Exception e) {
+            // 没有恢复的订单由超时订单清理任务取消
+            log.error("支付超时时间轮恢复未支付的订单失败，已恢复{}个", count, e);
+        }
+    }
+
+    private void fire(TimingWheel.Bucket expired) {
+        int batchSize = tradeProperties.getTimeout().getBatchSize();
+        List<Long> ids = new ArrayList<>(Math.min(expired.size(), batchSize));
+        for (int i = 0; i < expired.size(); i++) {
+            ids.add(expired.id(i));
+            if (ids.size() == batchSize || i == expired.size() - 1) {
+                check(ids);
+                ids = new ArrayList<>(batchSize);
+            }
+        }
+    }
+
+    private void check(List<Long> ids) {
+        try {
+            orderService.checkPayTimeout(ids);
+        } catch (Exception e) {
+            // 检查失败的订单延迟后重新检查
+            log.error("检查订单支付状态失败，稍后重试，订单数量：{}", ids.size(), e);
+            long deadline = System.currentTimeMillis() + tradeProperties.getSaga().getRetryDelay().toMillis();
+            for (Long id : ids) {
+                add(id, deadline);
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+-- 下单 saga 的状态表，id 与订单id相同
+CREATE TABLE IF NOT EXISTS `order_saga` (
+    `id`          BIGINT        NOT NULL COMMENT 'saga id，即订单id',
+    `user_id`     BIGINT        NOT NULL COMMENT '下单用户id',
+    `status`      TINYINT       NOT NULL COMMENT '1-执行中，2-补偿中，3-已完成，4-已补偿，5-失败',
+    `step`        TINYINT       NOT NULL COMMENT '执行中：下一个要执行的步骤；补偿中：下一个要补偿的步骤',
+    `retry_count` INT           NOT NULL DEFAULT 0 COMMENT '当前步骤的重试次数',
+    `payload`     VARCHAR(4096) NOT NULL COMMENT '下单数据，JSON',
+    `create_time` DATETIME      NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `update_time` DATETIME      NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    KEY `idx_status_update_time` (`status`, `update_time`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '下单 saga';
@@ -0,0 +1,4 @@
+-- 在 order_saga.sql 之后执行：下单数据可能超过 4096 个字符，改为 TEXT；增加步骤的占用时间
+ALTER TABLE `order_saga`
+    MODIFY COLUMN `payload` TEXT NOT NULL COMMENT '下单数据，JSON',
+    ADD COLUMN `lease_until` DATETIME NULL COMMENT '当前步骤被占用到的时间，到期前其它消费者不能执行这个步骤' AFTER `retry_count`;
@@ -0,0 +1,8 @@
+-- 待归还库存的已取消订单，与取消订单在同一个本地事务中写入，归还成功后删除。
+-- 提交后实例崩溃或者调用商品服务失败时，由定时任务重新归还，商品服务按订单id 幂等
+CREATE TABLE IF NOT EXISTS `order_stock_restore` (
+    `order_id`    BIGINT   NOT NULL COMMENT '订单id',
+    `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`order_id`),
+    KEY `idx_create_time` (`create_time`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '待归还库存的订单';
@@ -0,0 +1,3 @@
+-- 在 order_stock_restore.sql 之后执行：下单失败时订单没有写入，无法从订单详情查询要归还的商品，记录在待归还记录中
+ALTER TABLE `order_stock_restore`
+    ADD COLUMN `details` TEXT NULL COMMENT '没有写入订单时待归还的商品和数量，JSON，已写入的订单从订单详情查询' AFTER `order_id`;
@@ -0,0 +1,2 @@
+-- 超时订单清理任务按 status = 1 过滤后按 id 顺序分页查询，订单id 由雪花算法生成，按 id 排序即按下单时间排序
+ALTER TABLE `order` ADD INDEX `idx_status_id` (`status`, `id`);
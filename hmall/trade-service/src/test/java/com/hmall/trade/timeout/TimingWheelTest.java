@@ -0,0 +1,98 @@
+package com.hmall.trade.timeout;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    @Test
+    void expiresExactlyAtDeadlineTick() {
+        TimingWheel wheel = new TimingWheel(8, 3, 0);
+        TimingWheel.Bucket expired = new TimingWheel.Bucket();
+        // 第 0 层的最后一格、第 1 层的第一格
+        assertTrue(wheel.add(1, 7, expired));
+        assertTrue(wheel.add(2, 8, expired));
+        assertTrue(wheel.add(3, 1, expired));
+
+        Map<Long, Long> fired = advanceTo(wheel, 20);
+        assertEquals(Map.of(1L, 7L, 2L, 8L, 3L, 1L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cascadesAcrossLevels() {
+        long start = 3;
+        TimingWheel wheel = new TimingWheel(8, 3, start);
+        TimingWheel.Bucket expired = new TimingWheel.Bucket();
+        // 覆盖每一层的边界：8、64 以及 512 格以内的任意位置
+        Map<Long, Long> deadlines = new HashMap<>();
+        long[] deltas = {1, 7, 8, 9, 63, 64, 65, 100, 511};
+        for (int i = 0; i < deltas.length; i++) {
+            deadlines.put((long) i, start + deltas[i]);
+        }
+        Random random = new Random(42);
+        for (long id = deltas.length; id < 2000; id++) {
+            deadlines.put(id, start + 1 + random.nextInt(511));
+        }
+        deadlines.forEach((id, deadline) -> assertTrue(wheel.add(id, deadline, expired)));
+        assertEquals(deadlines.size(), wheel.size());
+
+        Map<Long, Long> fired = advanceTo(wheel, start + 512);
+        assertEquals(deadlines, fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineExpiresImmediately() {
+        TimingWheel wheel = new TimingWheel(8, 2, 100);
+        TimingWheel.Bucket expired = new TimingWheel.Bucket();
+
+        assertFalse(wheel.add(1, 100, expired));
+        assertFalse(wheel.add(2, 40, expired));
+
+        assertEquals(2, expired.size());
+        assertEquals(1, expired.id(0));
+        assertEquals(2, expired.id(1));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void overflowBeyondTopLevelIsNotFiredEarly() {
+        // 两层 4 格只能容纳 16 格以内的任务
+        TimingWheel wheel = new TimingWheel(4, 2, 0);
+        TimingWheel.Bucket expired = new TimingWheel.Bucket();
+        assertTrue(wheel.add(1, 100, expired));
+        assertTrue(wheel.add(2, 17, expired));
+        assertTrue(wheel.add(3, 1000, expired));
+
+        Map<Long, Long> fired = advanceTo(wheel, 1000);
+        assertEquals(Map.of(1L, 100L, 2L, 17L, 3L, 1000L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rejectsWheelSizeNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(10, 2, 0));
+    }
+
+    /**
+     * 逐格推进到指定的格子，返回每个任务到期时的格子序号
+     */
+    private Map<Long, Long> advanceTo(TimingWheel wheel, long tick) {
+        Map<Long, Long> fired = new HashMap<>();
+        TimingWheel.Bucket expired = new TimingWheel.Bucket();
+        while (wheel.currentTick() < tick) {
+            wheel.advance(expired);
+            for (int i = 0; i < expired.size(); i++) {
+                assertNull(fired.put(expired.id(i), wheel.currentTick()), "任务重复到期");
+            }
+            expired.clear();
+        }
+        return fired;
+    }
+}